@@ -0,0 +1,122 @@
+import bench.EditorWorkload;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.PlainDocument;
+
+/*
+ 基准测试桥接实现：直接调用编辑器的模型与服务层。
+ 视图同步路径复现 TextEditor 的文档监听：Document 的插入/删除区间增量写入模型，
+ 使用无界面的 PlainDocument，不初始化窗口。
+ */
+public class DefaultEditorWorkload implements EditorWorkload {
+    private static final int UNDO_LIMIT = 1000;             // 与编辑器相同的撤销上限
+    private static final long UNDO_MEMORY_LIMIT = 64L << 20;
+
+    private final TextModel textModel = new TextModel();
+    private final FileService fileService = new FileService(textModel);
+    private final FindReplaceService findReplaceService = new FindReplaceService(textModel);
+    private final InsertService insertService = new InsertService(textModel);
+    private final DeleteService deleteService = new DeleteService(textModel);
+    private final BlockMoveService blockMoveService = new BlockMoveService(textModel);
+    private Document view;  // 文档视图，attachView后有效
+    private int caret;      // 视图中的键入位置
+
+    @Override
+    public void setContent(String content) {
+        textModel.setContentFromString(content);
+        textModel.enableUndo(UNDO_LIMIT, UNDO_MEMORY_LIMIT);
+    }
+
+    @Override
+    public int lineCount() {
+        return textModel.getTotalLines();
+    }
+
+    @Override
+    public boolean open(String path) {
+        return fileService.openFile(path);
+    }
+
+    @Override
+    public boolean save(String path) {
+        return fileService.saveFile(path);
+    }
+
+    @Override
+    public int find(String query) {
+        return findReplaceService.findText(query).size();
+    }
+
+    @Override
+    public int replaceAll(String findText, String replaceText) {
+        return findReplaceService.replaceAll(findText, replaceText, false, false);
+    }
+
+    @Override
+    public void moveLineBlock(int startLine, int endLine, int targetLine) {
+        blockMoveService.moveLineBlock(startLine, endLine, targetLine);
+    }
+
+    @Override
+    public void moveColumnBlock(int startLine, int endLine, int startCol, int endCol, int targetLine, int targetCol) {
+        blockMoveService.moveColumnBlock(startLine, endLine, startCol, endCol, targetLine, targetCol);
+    }
+
+    @Override
+    public void insertTextBlock(int lineIndex, int column, String[] block) {
+        insertService.insertTextBlock(lineIndex, column, block);
+    }
+
+    @Override
+    public void deleteTextBlock(int startLine, int startCol, int endLine, int endCol) {
+        deleteService.deleteTextBlock(startLine, startCol, endLine, endCol);
+    }
+
+    @Override
+    public boolean undo() {
+        return textModel.undo() != null;
+    }
+
+    @Override
+    public void attachView(int caretLine) {
+        Document doc = new PlainDocument();
+        try {
+            doc.insertString(0, textModel.getContentAsString(), null);
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e);
+        }
+        doc.addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                try {
+                    textModel.insertText(e.getOffset(), e.getDocument().getText(e.getOffset(), e.getLength()));
+                } catch (BadLocationException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                textModel.deleteText(e.getOffset(), e.getLength());
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        view = doc;
+        caret = textModel.getLineStartOffset(caretLine);
+    }
+
+    @Override
+    public void type(char c) {
+        try {
+            view.insertString(caret++, String.valueOf(c), null);
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
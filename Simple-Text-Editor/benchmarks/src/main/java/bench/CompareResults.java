@@ -0,0 +1,81 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ 对比两份JMH的CSV结果（-rf csv）：按“基准名 + 模式 + 参数”对齐，输出两边得分与变化百分比。
+ 用法：java -cp target/benchmarks.jar bench.CompareResults baseline/results.csv new.csv [阈值%]
+ 变化超过阈值（默认10%）的行以"!"标出；含-prof gc的次级指标（分配速率等）同样参与对比。
+ */
+public final class CompareResults {
+
+    private CompareResults() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: CompareResults <baseline.csv> <current.csv> [threshold%]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, String[]> baseline = read(Path.of(args[0]));
+        Map<String, String[]> current = read(Path.of(args[1]));
+        System.out.printf(Locale.ENGLISH, "%-70s %14s %14s %9s  %s%n", "benchmark", "baseline", "current", "change", "unit");
+        for (Map.Entry<String, String[]> e : current.entrySet()) {
+            String[] now = e.getValue();
+            String[] before = baseline.get(e.getKey());
+            double score = Double.parseDouble(now[4]);
+            if (before == null) {
+                System.out.printf(Locale.ENGLISH, "  %-68s %14s %14.3f %9s  %s%n", e.getKey(), "-", score, "new", now[6]);
+                continue;
+            }
+            double old = Double.parseDouble(before[4]);
+            double change = old == 0 ? 0 : (score - old) * 100 / old;
+            System.out.printf(Locale.ENGLISH, "%s %-68s %14.3f %14.3f %+8.1f%%  %s%n",
+                    Math.abs(change) > threshold ? "!" : " ", e.getKey(), old, score, change, now[6]);
+        }
+    }
+
+    //读取CSV：键为 基准名|模式|各参数值，值为整行各列
+    private static Map<String, String[]> read(Path file) throws IOException {
+        Map<String, String[]> rows = new LinkedHashMap<>();
+        List<String> lines = Files.readAllLines(file);
+        for (int i = 1; i < lines.size(); i++) {
+            String[] cols = split(lines.get(i));
+            if (cols.length < 7) continue;
+            StringBuilder key = new StringBuilder(cols[0]).append(" [").append(cols[1]);
+            for (int c = 7; c < cols.length; c++) {
+                key.append(", ").append(cols[c]);
+            }
+            rows.put(key.append(']').toString(), cols);
+        }
+        return rows;
+    }
+
+    //按逗号拆分，支持双引号包裹的字段
+    private static String[] split(String line) {
+        List<String> cols = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                cols.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        cols.add(sb.toString());
+        return cols.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,40 @@
+package bench;
+
+/*
+ 基准测试用的生成文档：确定性的日志风格文本，不依赖外部文件。
+ - 大部分行形如"12:34:56 INFO  req 123456 ok 42ms"
+ - 每97行一条ERROR行（稀有查找目标），每50行一个空行
+ */
+public final class Documents {
+    public static final String RARE_WORD = "ERROR";    // 稀有词：约1%的行
+    public static final String FREQUENT_WORD = "req";  // 高频词：几乎每行
+
+    private Documents() {
+    }
+
+    //生成lines行的文本（行间以\n分隔，末行无换行）
+    public static String generate(int lines) {
+        StringBuilder sb = new StringBuilder(lines * 34);
+        long seed = 42;
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) sb.append('\n');
+            if (i % 50 == 49) continue;
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            int r = (int) (seed >>> 33);
+            int second = i % 86400;
+            appendTwoDigits(sb, second / 3600 % 24).append(':');
+            appendTwoDigits(sb, second / 60 % 60).append(':');
+            appendTwoDigits(sb, second % 60);
+            if (i % 97 == 0) {
+                sb.append(" ERROR req ").append(r % 1000000).append(" failed: timeout");
+            } else {
+                sb.append(" INFO  req ").append(r % 1000000).append(" ok ").append(r % 500).append("ms");
+            }
+        }
+        return sb.toString();
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder sb, int value) {
+        return sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
@@ -0,0 +1,68 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ 编辑服务：全部替换、行块/列块移动、文本块插入/删除。
+ 每次调用后撤销（O(1)换回快照，不计入测量），保证每次都作用于同一份文档。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EditBenchmark {
+    private static final int COLUMN_BLOCK_LINES = 50_000; // 列块最多涉及的行数
+    private static final int TEXT_BLOCK_LINES = 100;      // 插入/删除的文本块行数
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int lines;
+
+    private EditorWorkload editor;
+    private String[] textBlock;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        editor = EditorWorkload.create();
+        editor.setContent(Documents.generate(lines));
+        textBlock = Documents.generate(TEXT_BLOCK_LINES).split("\n", -1);
+    }
+
+    @TearDown(Level.Invocation)
+    public void undo() {
+        editor.undo();
+    }
+
+    @Benchmark
+    public int replaceAll() {
+        return editor.replaceAll("INFO", "WARN");
+    }
+
+    //行块移动：第1/4处开始的10%的行移到第3/4处
+    @Benchmark
+    public void moveLineBlock() {
+        int start = lines / 4;
+        editor.moveLineBlock(start, start + Math.max(lines / 10, 1) - 1, lines * 3 / 4);
+    }
+
+    //列块移动：把时间戳之后的列区（第9~14列）移到第40列
+    @Benchmark
+    public void moveColumnBlock() {
+        int count = Math.min(lines / 2, COLUMN_BLOCK_LINES);
+        editor.moveColumnBlock(0, count - 1, 9, 15, lines / 2, 40);
+    }
+
+    @Benchmark
+    public void insertTextBlock() {
+        editor.insertTextBlock(lines / 2, 5, textBlock);
+    }
+
+    @Benchmark
+    public void deleteTextBlock() {
+        int start = lines / 2 - Math.min(TEXT_BLOCK_LINES, lines / 2);
+        editor.deleteTextBlock(start, 5, lines / 2, 5);
+    }
+}
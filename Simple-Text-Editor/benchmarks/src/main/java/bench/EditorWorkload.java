@@ -0,0 +1,53 @@
+package bench;
+
+import java.util.ServiceLoader;
+
+/*
+ 基准测试访问编辑器的桥接接口。
+ 编辑器的类位于默认包，而JMH要求基准类位于具名包，具名包无法引用默认包中的类；
+ 因此由默认包中的 DefaultEditorWorkload 实现本接口，经 ServiceLoader 加载。
+ 接口调用在JIT中是单态的，会被内联，不影响测量结果。
+ */
+public interface EditorWorkload {
+
+    //加载默认包中的实现：每次调用返回一个带独立模型与服务的新实例
+    static EditorWorkload create() {
+        return ServiceLoader.load(EditorWorkload.class).findFirst()
+                .orElseThrow(() -> new IllegalStateException("no EditorWorkload implementation"));
+    }
+
+    //以content重置模型，启用撤销并清空历史
+    void setContent(String content);
+
+    //当前总行数
+    int lineCount();
+
+    //同步打开文件（FileService.openFile）
+    boolean open(String path);
+
+    //同步保存文件（FileService.saveFile）
+    boolean save(String path);
+
+    //查找全部匹配，返回匹配数
+    int find(String query);
+
+    //全部替换，返回替换数
+    int replaceAll(String findText, String replaceText);
+
+    void moveLineBlock(int startLine, int endLine, int targetLine);
+
+    void moveColumnBlock(int startLine, int endLine, int startCol, int endCol, int targetLine, int targetCol);
+
+    void insertTextBlock(int lineIndex, int column, String[] block);
+
+    void deleteTextBlock(int startLine, int startCol, int endLine, int endCol);
+
+    //撤销最近一次变更，无可撤销时返回false
+    boolean undo();
+
+    //建立文档视图：以当前内容创建Document，并按编辑器的方式把插入/删除增量同步到模型
+    void attachView(int caretLine);
+
+    //在视图光标处键入一个字符（经文档监听同步到模型），光标随之后移
+    void type(char c);
+}
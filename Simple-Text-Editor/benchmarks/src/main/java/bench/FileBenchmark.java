@@ -0,0 +1,52 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/*
+ 存盘/取盘：FileService 的同步打开与保存（打开时ASCII文件走内存映射）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FileBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int lines;
+
+    private EditorWorkload editor;
+    private Path source; // 打开用的生成文件
+    private Path target; // 保存目标
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        String content = Documents.generate(lines);
+        source = Files.createTempFile("bench-open", ".txt");
+        target = Files.createTempFile("bench-save", ".txt");
+        Files.writeString(source, content);
+        editor = EditorWorkload.create();
+        editor.setContent(content);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(target);
+    }
+
+    @Benchmark
+    public boolean open() {
+        return editor.open(source.toString());
+    }
+
+    @Benchmark
+    public boolean save() {
+        return editor.save(target.toString());
+    }
+}
@@ -0,0 +1,37 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ 查找：稀有词（约1%的行）与高频词（几乎每行）的全文查找，结果全部收集。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SearchBenchmark {
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int lines;
+
+    private EditorWorkload editor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        editor = EditorWorkload.create();
+        editor.setContent(Documents.generate(lines));
+    }
+
+    @Benchmark
+    public int findRare() {
+        return editor.find(Documents.RARE_WORD);
+    }
+
+    @Benchmark
+    public int findFrequent() {
+        return editor.find(Documents.FREQUENT_WORD);
+    }
+}
@@ -0,0 +1,46 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ 视图→模型同步：在文档中部逐字符键入，经文档监听增量写入模型（含撤销记录与输入合并）。
+ 每轮迭代重建文档，避免文档随键入无限增长。
+ 10M行时无界面文档本身的内存开销过大，不在此测量。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ViewSyncBenchmark {
+    private static final String TYPED = "the quick brown fox jumps over the lazy dog ";
+
+    @Param({"1000", "100000", "1000000"})
+    public int lines;
+
+    private EditorWorkload editor;
+    private String content;
+    private int next; // TYPED中下一个要键入的字符
+
+    @Setup(Level.Trial)
+    public void setup() {
+        content = Documents.generate(lines);
+        editor = EditorWorkload.create();
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        editor.setContent(content);
+        editor.attachView(lines / 2);
+        next = 0;
+    }
+
+    @Benchmark
+    public void typeChar() {
+        editor.type(TYPED.charAt(next));
+        next = (next + 1) % TYPED.length();
+    }
+}
@@ -0,0 +1,487 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ 无界面批量编辑：按脚本对文件依次执行编辑操作，不创建窗口、不初始化AWT，可在无图形环境的服务器上运行。
+ 各操作直接调用服务类（FindReplace/Insert/Delete/BlockMove），行为与编辑器中的同名命令一致。
+ - 脚本只含查找/替换且文本不含换行（匹配不会跨行）时流式处理：输入按行块读入，编辑后立即写出，
+   内存占用与文件大小无关
+ - 含按位置的编辑（插入、删除、块移动）时整份读入模型，全部操作完成后一次写出
+ - 两种方式都按原始字符处理，换行符（\n或\r\n）与末尾换行原样保留
+ - 写文件都经FileService：写同目录临时文件、落盘后原子替换，失败时原文件不变
+ - 每个操作的耗时与结果输出到标准错误，查找结果以"来源:行:列"逐条输出到标准错误
+
+ 用法：java -cp simple-text-editor.jar BatchEditor [-o 输出文件] [-e 字符集] 脚本 [输入文件...]
+ 没有输入文件时读标准输入、写标准输出；有输入文件且未指定-o时原地修改。
+ 输入输出（包括标准输入输出）都按-e指定的字符集编解码，默认UTF-8，与平台默认字符集无关。
+ 脚本每行一个操作，#开头为注释；行号从1开始、列号从0开始（与编辑器对话框一致）；
+ 按位置的操作执行时检查行号：源行须是已有的行，行块移动的目标可以是末行之后，
+ 列块移动/复制的目标行超出文档时补空行；插入与删除的列不能超出行长。
+ 字符串用双引号包裹，支持 \n \t \" \\ 转义：
+   find [-i] [-w] "文本"
+   replace [-i] [-w] "查找" "替换为"
+   insertString 行 列 "文本"
+   insertTextBlock 行 列 "多行文本"
+   deleteTextBlock 起始行 起始列 结束行 结束列
+   moveLineBlock 起始行 结束行 目标行
+   moveColumnBlock 起始行 结束行 起始列 结束列 目标行 目标列
+   copyColumnBlock 起始行 结束行 起始列 结束列 目标行 目标列
+   deleteColumnBlock 起始行 结束行 起始列 结束列
+   fillColumnBlock 起始行 结束行 起始列 结束列 "单个字符"
+   insertColumn 起始行 结束行 列 "文本"
+ 退出码：0成功，1编辑或读写失败，2用法或脚本错误。
+ */
+public class BatchEditor {
+    private static final int CHUNK_CHARS = 1 << 20; // 流式处理时每块的最少字符数（按整行切分）
+
+    private final List<Operation> operations;
+    private final PrintStream report; // 计时与查找结果输出
+    private final Charset charset;    // 输入输出的字符集
+    private final TextModel textModel = new TextModel();
+    private final FindReplaceService findReplaceService = new FindReplaceService(textModel);
+    private final InsertService insertService = new InsertService(textModel);
+    private final DeleteService deleteService = new DeleteService(textModel);
+    private final BlockMoveService blockMoveService = new BlockMoveService(textModel);
+    private final FileService fileService = new FileService(textModel);
+
+    public BatchEditor(List<Operation> operations, PrintStream report) {
+        this(operations, report, StandardCharsets.UTF_8);
+    }
+
+    public BatchEditor(List<Operation> operations, PrintStream report, Charset charset) {
+        this.operations = operations;
+        this.report = report;
+        this.charset = charset;
+        fileService.setCharset(charset);
+    }
+
+    //脚本中的一个操作及其累计统计
+    public static final class Operation {
+        final int index;                                 // 在脚本中的操作序号（从1开始），用于报错
+        final int lineNumber;                            // 在脚本中的行号，用于报错
+        final String text;                               // 脚本原文，用于报告
+        final String name;
+        boolean ignoreCase;
+        boolean wholeWord;
+        final List<String> strings = new ArrayList<>();  // 字符串参数（按出现顺序）
+        final List<Integer> numbers = new ArrayList<>(); // 数字参数（按出现顺序）
+        long nanos;                                      // 累计耗时
+        long count;                                      // 累计匹配/替换次数
+
+        Operation(int index, int lineNumber, String text, String name) {
+            this.index = index;
+            this.lineNumber = lineNumber;
+            this.text = text;
+            this.name = name;
+        }
+
+        //查找/替换的文本不含换行时只作用于单行内，可以按行块分别执行
+        boolean isLineLocal() {
+            if (!name.equals("find") && !name.equals("replace")) return false;
+            for (String s : strings) {
+                if (s.indexOf('\n') >= 0) return false;
+            }
+            return true;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        String output = null;
+        String encoding = null;
+        int i = 0;
+        while (i + 1 < args.length && (args[i].equals("-o") || args[i].equals("-e"))) {
+            if (args[i].equals("-o")) {
+                output = args[i + 1];
+            } else {
+                encoding = args[i + 1];
+            }
+            i += 2;
+        }
+        if (i >= args.length) {
+            System.err.println("usage: BatchEditor [-o output] [-e charset] script [input...]");
+            System.exit(2);
+        }
+        Charset charset;
+        try {
+            charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+        } catch (IllegalArgumentException e) { // 非法或不支持的字符集名
+            System.err.println("error: unsupported charset " + encoding);
+            System.exit(2);
+            return;
+        }
+        List<Operation> operations;
+        try {
+            operations = parseScript(Files.readAllLines(Paths.get(args[i])));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("error: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        List<String> inputs = new ArrayList<>();
+        for (int k = i + 1; k < args.length; k++) {
+            inputs.add(args[k]);
+        }
+        if (output != null && inputs.size() > 1) {
+            System.err.println("error: -o requires a single input");
+            System.exit(2);
+        }
+        BatchEditor editor = new BatchEditor(operations, System.err, charset);
+        boolean ok = true;
+        if (inputs.isEmpty()) {
+            ok = editor.run(null, output);
+        } else {
+            for (String input : inputs) {
+                ok &= editor.run(input, output != null ? output : input);
+            }
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    /*
+     对一个输入执行全部操作：input为null时读标准输入，output为null时写标准输出。
+     失败时不修改输出文件，返回false。
+     */
+    public boolean run(String input, String output) {
+        String source = input == null ? "<stdin>" : input;
+        for (Operation op : operations) {
+            op.nanos = 0;
+            op.count = 0;
+        }
+        boolean streamed = isStreamable();
+        long begin = System.nanoTime();
+        try {
+            if (streamed) {
+                runStreamed(input, output, source);
+            } else {
+                runWhole(input, output, source);
+            }
+        } catch (IOException | RuntimeException e) {
+            report.println(source + ": error: " + e.getMessage());
+            return false;
+        }
+        printTimings(source, streamed, System.nanoTime() - begin);
+        return true;
+    }
+
+    private boolean isStreamable() {
+        for (Operation op : operations) {
+            if (!op.isLineLocal()) return false;
+        }
+        return true;
+    }
+
+    /*
+     整份读入：按原始字符读入，不拆行，换行符（含\r\n）与末尾换行都原样保留，与流式处理一致；
+     大的纯ASCII文件经FileService内存映射打开。全部操作后经FileService保存或写到标准输出
+     */
+    private void runWhole(String input, String output, String source) throws IOException {
+        if (input == null) {
+            textModel.setContentFromString(readAll(new InputStreamReader(System.in, charset)));
+        } else if (!openMapped(input)) {
+            try (Reader in = new InputStreamReader(Files.newInputStream(Paths.get(input)), charset)) {
+                textModel.setContentFromString(readAll(in));
+            }
+        }
+        for (Operation op : operations) {
+            apply(op, 0, source);
+        }
+        if (output == null) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, charset));
+            writeContent(out);
+            out.flush();
+        } else if (!fileService.saveFile(output)) {
+            throw new IOException("cannot write " + output + ": " + fileService.getLastError());
+        }
+    }
+
+    /*
+     大文件尝试内存映射打开：只接受与原文件逐字节对应的映射（纯ASCII且不含\r），
+     其他映射会把\r\n呈现为\n，不能原样保留换行符。
+     映射读取不含末尾换行，这里补回；不满足条件时返回false
+     */
+    private boolean openMapped(String input) throws IOException {
+        Path path = Paths.get(input);
+        long size = Files.size(path);
+        if (size < TextStorage.LARGE_CONTENT_THRESHOLD || !fileService.openFileMapped(input, true)) return false;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, size - 1);
+            if (last.get(0) == '\n') textModel.insertText(textModel.getLength(), "\n");
+        }
+        return true;
+    }
+
+    private static String readAll(Reader in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[64 * 1024];
+        int n;
+        while ((n = in.read(buf)) >= 0) {
+            sb.append(buf, 0, n);
+        }
+        return sb.toString();
+    }
+
+    /*
+     流式处理：按整行切出不少于CHUNK_CHARS的块装入模型，依次执行全部操作后立即写出。
+     块之间的换行原样保留，行号按已处理的行数累加；写文件经FileService原子替换，与保存同一路径。
+     */
+    private void runStreamed(String input, String output, String source) throws IOException {
+        try (Reader in = input == null ? new InputStreamReader(System.in, charset)
+                : new InputStreamReader(Files.newInputStream(Paths.get(input)), charset)) {
+            if (output == null) {
+                Writer out = new BufferedWriter(new OutputStreamWriter(System.out, charset));
+                stream(in, out, source);
+                out.flush();
+            } else {
+                fileService.writeFile(output, out -> stream(in, out, source));
+            }
+        }
+    }
+
+    //把in按整行切块，逐块执行全部操作后写到out
+    private void stream(Reader in, Writer out, String source) throws IOException {
+        char[] buf = new char[64 * 1024];
+        StringBuilder pending = new StringBuilder();
+        int lastFeed = -1; // pending中最后一个换行的位置，只在新读入的字符中查找
+        int lineBase = 0;
+        int n;
+        while ((n = in.read(buf)) >= 0) {
+            for (int k = n - 1; k >= 0; k--) {
+                if (buf[k] == '\n') {
+                    lastFeed = pending.length() + k;
+                    break;
+                }
+            }
+            pending.append(buf, 0, n);
+            if (pending.length() < CHUNK_CHARS || lastFeed < 0) continue; // 超长行：继续读到行尾
+            lineBase = processChunk(pending.substring(0, lastFeed), lineBase, source, out);
+            out.write('\n');
+            pending.delete(0, lastFeed + 1);
+            lastFeed = -1; // 剩余部分是最后一个换行之后的内容，不含换行
+        }
+        processChunk(pending.toString(), lineBase, source, out);
+    }
+
+    //把一块文本装入模型并执行全部操作后写出，返回下一块首行的全局行号
+    private int processChunk(String chunk, int lineBase, String source, Writer out) throws IOException {
+        textModel.setContentFromString(chunk);
+        for (Operation op : operations) {
+            apply(op, lineBase, source);
+        }
+        writeContent(out);
+        return lineBase + textModel.getTotalLines();
+    }
+
+    //执行一个操作并累计耗时；lineBase为模型首行在整个输入中的行号
+    private void apply(Operation op, int lineBase, String source) {
+        long begin = System.nanoTime();
+        try {
+            List<Integer> a = op.numbers;
+            checkLines(op);
+            switch (op.name) {
+                case "find" -> {
+                    Iterator<TextPosition> it = findReplaceService.matches(
+                            HorspoolSearch.of(op.strings.get(0), op.ignoreCase, op.wholeWord));
+                    while (it.hasNext()) {
+                        TextPosition p = it.next();
+                        report.println(source + ":" + (lineBase + p.getLine() + 1) + ":" + p.getColumn());
+                        op.count++;
+                    }
+                }
+                case "replace" -> op.count += findReplaceService.replaceAll(
+                        op.strings.get(0), op.strings.get(1), op.ignoreCase, op.wholeWord);
+                case "insertString" -> insertService.insertString(a.get(0) - 1, a.get(1), op.strings.get(0));
+                case "insertTextBlock" -> insertService.insertTextBlock(a.get(0) - 1, a.get(1),
+                        op.strings.get(0).split("\n", -1));
+                case "deleteTextBlock" -> deleteService.deleteTextBlock(a.get(0) - 1, a.get(1), a.get(2) - 1, a.get(3));
+                case "moveLineBlock" -> blockMoveService.moveLineBlock(a.get(0) - 1, a.get(1) - 1, a.get(2) - 1);
+                case "moveColumnBlock" -> blockMoveService.moveColumnBlock(a.get(0) - 1, a.get(1) - 1,
+                        a.get(2), a.get(3), a.get(4) - 1, a.get(5));
+                case "copyColumnBlock" -> blockMoveService.copyColumnBlock(a.get(0) - 1, a.get(1) - 1,
+                        a.get(2), a.get(3), a.get(4) - 1, a.get(5));
+                case "deleteColumnBlock" -> blockMoveService.deleteColumnBlock(a.get(0) - 1, a.get(1) - 1, a.get(2), a.get(3));
+                case "fillColumnBlock" -> blockMoveService.fillColumnBlock(a.get(0) - 1, a.get(1) - 1,
+                        a.get(2), a.get(3), op.strings.get(0).charAt(0));
+                case "insertColumn" -> blockMoveService.insertColumn(a.get(0) - 1, a.get(1) - 1, a.get(2), op.strings.get(0));
+                default -> throw new IllegalStateException(op.name);
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("operation " + op.index + " (script line " + op.lineNumber + ": "
+                    + op.text + "): " + e.getMessage(), e);
+        }
+        op.nanos += System.nanoTime() - begin;
+    }
+
+    /*
+     按当前行数检查按位置操作的行号参数（从1开始）：源行须是已有的行，行块移动的目标可以是末行之后一行；
+     列块移动/复制的目标行由列块服务补出空行，不在此限制。列号由各服务检查。
+     */
+    private void checkLines(Operation op) {
+        List<Integer> a = op.numbers;
+        int total = textModel.getTotalLines();
+        switch (op.name) {
+            case "insertString", "insertTextBlock" -> checkLine(a.get(0), total);
+            case "deleteTextBlock" -> {
+                checkLine(a.get(0), total);
+                checkLine(a.get(2), total);
+            }
+            case "moveLineBlock" -> {
+                checkLine(a.get(0), total);
+                checkLine(a.get(1), total);
+                checkLine(a.get(2), total + 1);
+            }
+            case "moveColumnBlock", "copyColumnBlock", "deleteColumnBlock", "fillColumnBlock", "insertColumn" -> {
+                checkLine(a.get(0), total);
+                checkLine(a.get(1), total);
+            }
+            default -> { }
+        }
+    }
+
+    private static void checkLine(int line, int max) {
+        if (line < 1 || line > max) {
+            throw new IllegalArgumentException("line " + line + " out of range 1.." + max);
+        }
+    }
+
+    //把模型全文分块写出，不拼接整串
+    private void writeContent(Writer out) throws IOException {
+        Iterator<CharBuffer> chunks = textModel.contentChunks();
+        while (chunks.hasNext()) {
+            CharBuffer chunk = chunks.next();
+            if (chunk.hasArray()) {
+                out.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+            } else {
+                out.append(chunk);
+            }
+        }
+    }
+
+    //输出各操作的累计耗时；读写耗时为总耗时减去各操作耗时
+    private void printTimings(String source, boolean streamed, long totalNanos) {
+        report.println(source + (streamed ? " (streamed)" : ""));
+        long opNanos = 0;
+        for (Operation op : operations) {
+            boolean counted = op.name.equals("find") || op.name.equals("replace");
+            report.printf(Locale.ENGLISH, "  %-48s %10s %10.3f ms%n",
+                    op.text, counted ? String.valueOf(op.count) : "", op.nanos / 1e6);
+            opNanos += op.nanos;
+        }
+        report.printf(Locale.ENGLISH, "  %-48s %10s %10.3f ms%n", "read/write", "", (totalNanos - opNanos) / 1e6);
+        report.printf(Locale.ENGLISH, "  %-48s %10s %10.3f ms%n", "total", "", totalNanos / 1e6);
+    }
+
+    /*
+     解析脚本：每行一个操作，跳过空行与#注释。
+     带引号的记号为字符串参数，-i/-w为选项，其余必须是整数；参数个数不符时报错并指出脚本行号。
+     */
+    public static List<Operation> parseScript(List<String> lines) {
+        List<Operation> operations = new ArrayList<>();
+        for (int n = 0; n < lines.size(); n++) {
+            String text = lines.get(n).strip();
+            if (text.isEmpty() || text.startsWith("#")) continue;
+            List<String> tokens = new ArrayList<>();
+            List<Boolean> quoted = new ArrayList<>();
+            tokenize(text, n + 1, tokens, quoted);
+            Operation op = new Operation(operations.size() + 1, n + 1, text, tokens.get(0));
+            for (int k = 1; k < tokens.size(); k++) {
+                String token = tokens.get(k);
+                if (quoted.get(k)) {
+                    op.strings.add(token);
+                } else if (token.equals("-i")) {
+                    op.ignoreCase = true;
+                } else if (token.equals("-w")) {
+                    op.wholeWord = true;
+                } else {
+                    try {
+                        op.numbers.add(Integer.parseInt(token));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("script line " + (n + 1) + ": bad argument " + token);
+                    }
+                }
+            }
+            checkArity(op);
+            operations.add(op);
+        }
+        return operations;
+    }
+
+    //各操作的参数个数：数字个数、字符串个数；选项只用于查找/替换
+    private static void checkArity(Operation op) {
+        int numbers;
+        int strings;
+        switch (op.name) {
+            case "find" -> { numbers = 0; strings = 1; }
+            case "replace" -> { numbers = 0; strings = 2; }
+            case "insertString", "insertTextBlock" -> { numbers = 2; strings = 1; }
+            case "deleteTextBlock" -> { numbers = 4; strings = 0; }
+            case "moveLineBlock" -> { numbers = 3; strings = 0; }
+            case "moveColumnBlock", "copyColumnBlock" -> { numbers = 6; strings = 0; }
+            case "deleteColumnBlock" -> { numbers = 4; strings = 0; }
+            case "fillColumnBlock" -> { numbers = 4; strings = 1; }
+            case "insertColumn" -> { numbers = 3; strings = 1; }
+            default -> throw new IllegalArgumentException("script line " + op.lineNumber + ": unknown operation " + op.name);
+        }
+        boolean options = op.ignoreCase || op.wholeWord;
+        if (op.numbers.size() != numbers || op.strings.size() != strings
+                || (options && numbers > 0) || (strings > 0 && op.strings.get(0).isEmpty() && numbers == 0)
+                || (op.name.equals("fillColumnBlock") && op.strings.get(0).length() != 1)) {
+            throw new IllegalArgumentException("script line " + op.lineNumber + ": bad arguments for " + op.name);
+        }
+    }
+
+    //按空白切分记号，双引号内的空白保留并处理转义
+    private static void tokenize(String text, int lineNumber, List<String> tokens, List<Boolean> quoted) {
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                StringBuilder sb = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= n) {
+                        throw new IllegalArgumentException("script line " + lineNumber + ": unterminated string");
+                    }
+                    c = text.charAt(i++);
+                    if (c == '"') break;
+                    if (c == '\\' && i < n) {
+                        c = text.charAt(i++);
+                        switch (c) {
+                            case 'n' -> sb.append('\n');
+                            case 't' -> sb.append('\t');
+                            default -> sb.append(c);
+                        }
+                    } else {
+                        sb.append(c);
+                    }
+                }
+                tokens.add(sb.toString());
+                quoted.add(true);
+            } else {
+                int start = i;
+                while (i < n && !Character.isWhitespace(text.charAt(i))) i++;
+                tokens.add(text.substring(start, i));
+                quoted.add(false);
+            }
+        }
+        if (quoted.get(0)) {
+            throw new IllegalArgumentException("script line " + lineNumber + ": missing operation name");
+        }
+    }
+}
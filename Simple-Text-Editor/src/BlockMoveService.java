@@ -1,6 +1,3 @@
-import java.util.ArrayList;
-import java.util.List;
-
 /*
  块移动服务：支持行块移动与列块（矩形选区）移动。
  行块：整体剪切并插入到目标行位置；列块：逐行提取列区并在目标位置插入。
@@ -9,87 +6,61 @@ import java.util.List;
 public class BlockMoveService {
     // 文本模型
     private TextModel textModel;
+    // 列块引擎：逐行单遍改写，一次提交
+    private ColumnBlockService columnBlockService;
 
     public BlockMoveService(TextModel model) {
         this.textModel = model;
+        this.columnBlockService = new ColumnBlockService(model);
     }
 
-    //行块移动：将[startLine, endLine]范围内的整行剪切并插入到targetLine位置
-    public void moveLineBlock(int startLine, int endLine, int targetLine) {
+    //行块移动：将[startLine, endLine]范围内的整行剪切并插入到targetLine位置，返回受影响区间
+    public TextChange moveLineBlock(int startLine, int endLine, int targetLine) {
         if (startLine < 0 || endLine >= textModel.getTotalLines() ||
                 targetLine < 0 || targetLine > textModel.getTotalLines()) {
             throw new IllegalArgumentException("line index out of bounds");
         }
 
-        List<String> block = new ArrayList<>();
-        for (int i = startLine; i <= endLine; i++) {
-            block.add(textModel.getLine(startLine));
-            textModel.deleteLine(startLine);
-        }
-
-        // 若目标在原块之后，因先删除块会缩短列表，需要将目标位置回退块长度
-        int actualTarget = targetLine > startLine ? targetLine - (endLine - startLine + 1) : targetLine;
-
-        for (int i = 0; i < block.size(); i++) {
-            textModel.insertLine(actualTarget + i, block.get(i));
-        }
+        int count = endLine - startLine + 1;
+        // 若目标在原块之后，先删除块会缩短列表，需要将目标位置回退块长度
+        int actualTarget = targetLine > startLine ? targetLine - count : targetLine;
+        // 换算回移动前的行号后一次移动，不逐行删除/插入
+        int dest = actualTarget <= startLine ? actualTarget : actualTarget + count;
+        return textModel.runAtomically(() -> textModel.moveLines(startLine, endLine + 1, dest));
     }
 
     /*
     列块移动（矩形区域选择）：
     提取[startLine,endLine]每行[startCol,endCol)的文本为列块，先从原位置删除，再插入到目标行/列。
+    返回受影响区间。
      */
-    public void moveColumnBlock(int startLine, int endLine, int startCol, int endCol, int targetLine, int targetCol) {
+    public TextChange moveColumnBlock(int startLine, int endLine, int startCol, int endCol, int targetLine, int targetCol) {
         if (startLine < 0 || endLine < startLine || targetLine < 0) {
             throw new IllegalArgumentException("line index out of bounds");
         }
         if (startCol < 0 || endCol < startCol || targetCol < 0) {
             throw new IllegalArgumentException("column index out of bounds");
         }
-        // 提取列块内容
-        List<String> columnBlock = new ArrayList<>();
-        for (int i = startLine; i <= endLine; i++) {
-            String line = textModel.getLine(i);
-            if (line == null) line = ""; // 超界容错
-            if (startCol < line.length()) {
-                int actualEndCol = Math.min(endCol, line.length());
-                String blockContent = line.substring(startCol, actualEndCol);
-                columnBlock.add(blockContent);
-            } else {
-                columnBlock.add("");
-            }
-        }
+        return columnBlockService.moveBlock(startLine, endLine, startCol, endCol, targetLine, targetCol);
+    }
 
-        // 从原位置删除：对每一行移除对应列区间
-        for (int i = startLine; i <= endLine; i++) {
-            String line = textModel.getLine(i);
-            if (line == null) line = "";
-            if (startCol < line.length()) {
-                int actualEndCol = Math.min(endCol, line.length());
-                String newLine = line.substring(0, startCol) + line.substring(actualEndCol);
-                textModel.updateLine(i, newLine);
-            }
-        }
+    //列块复制：与列块移动相同，但保留原位置的内容
+    public TextChange copyColumnBlock(int startLine, int endLine, int startCol, int endCol, int targetLine, int targetCol) {
+        return columnBlockService.copyBlock(startLine, endLine, startCol, endCol, targetLine, targetCol);
+    }
 
-        // 插入到目标位置：必要时补齐空行；列不足时以空格填充到目标列
-        for (int i = 0; i < columnBlock.size(); i++) {
-            int lineIndex = targetLine + i;
-            // 若目标行不足，则补齐空行
-            while (textModel.getTotalLines() <= lineIndex) {
-                textModel.insertLine(textModel.getTotalLines(), "");
-            }
+    //列块删除：各行移除[startCol, endCol)，行长不足startCol的行不变
+    public TextChange deleteColumnBlock(int startLine, int endLine, int startCol, int endCol) {
+        return columnBlockService.deleteBlock(startLine, endLine, startCol, endCol);
+    }
 
-            String line = textModel.getLine(lineIndex);
-            if (line == null) line = "";
-            if (targetCol > line.length()) {
-                // 填充空格直到目标列
-                line = String.format("%-" + targetCol + "s", line);
-            }
+    //列块填充：各行[startCol, endCol)替换为fill，行长不足时以空格补齐
+    public TextChange fillColumnBlock(int startLine, int endLine, int startCol, int endCol, char fill) {
+        return columnBlockService.fillBlock(startLine, endLine, startCol, endCol, fill);
+    }
 
-            //新行 = 目标列前的文本 + 列块内容 + 目标列后的文本(如果存在)
-            String newLine = line.substring(0, Math.min(targetCol, line.length())) + columnBlock.get(i) +
-                    (targetCol < line.length() ? line.substring(targetCol) : "");
-            textModel.updateLine(lineIndex, newLine);
-        }
+    //插入列：在[startLine, endLine]各行的column处插入text，行长不足时以空格补齐
+    public TextChange insertColumn(int startLine, int endLine, int column, String text) {
+        return columnBlockService.insertColumn(startLine, endLine, column, text);
     }
 }
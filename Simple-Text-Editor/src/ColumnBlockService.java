@@ -0,0 +1,191 @@
+/*
+ 列块（矩形选区）服务：对[startLine, endLine]各行的[startCol, endCol)列区执行移动、复制、删除、填充与插入。
+ - 受影响的行区间一次读出，逐行在同一个行缓冲中改写并写入输出缓冲，每行只处理一遍
+ - 列不足时以空格补齐到目标列
+ - 改写结果以一次拼接写回模型；源区与目标区不相接时分两次拼接，同属一次批量编辑
+ */
+public class ColumnBlockService {
+    // 文本模型
+    private TextModel textModel;
+
+    public ColumnBlockService(TextModel model) {
+        this.textModel = model;
+    }
+
+    //逐行改写操作：row为该行当前内容，原地修改
+    private interface RowEdit {
+        void apply(int line, StringBuilder row);
+    }
+
+    /*
+     移动列块：提取各行[startCol, endCol)的文本并从原位置删除，再插入到targetLine起各行的targetCol处。
+     目标行不足时补空行；返回受影响区间。
+     */
+    public TextChange moveBlock(int startLine, int endLine, int startCol, int endCol, int targetLine, int targetCol) {
+        return transfer(startLine, endLine, startCol, endCol, targetLine, targetCol, true);
+    }
+
+    //复制列块：与移动相同，但保留原位置的内容
+    public TextChange copyBlock(int startLine, int endLine, int startCol, int endCol, int targetLine, int targetCol) {
+        return transfer(startLine, endLine, startCol, endCol, targetLine, targetCol, false);
+    }
+
+    //删除列块：各行移除[startCol, endCol)，行长不足startCol的行不变
+    public TextChange deleteBlock(int startLine, int endLine, int startCol, int endCol) {
+        checkBlock(startLine, endLine, startCol, endCol);
+        int last = Math.min(endLine, textModel.getTotalLines() - 1);
+        if (startLine > last) return null;
+        return textModel.runAtomically(() -> rewriteRows(startLine, last, (line, r) -> deleteColumns(r, startCol, endCol)));
+    }
+
+    //填充列块：各行[startCol, endCol)全部替换为fill，行长不足时先以空格补齐
+    public TextChange fillBlock(int startLine, int endLine, int startCol, int endCol, char fill) {
+        checkBlock(startLine, endLine, startCol, endCol);
+        int last = Math.min(endLine, textModel.getTotalLines() - 1);
+        if (startLine > last) return null;
+        return textModel.runAtomically(() -> rewriteRows(startLine, last, (line, r) -> {
+            pad(r, endCol);
+            for (int c = startCol; c < endCol; c++) {
+                r.setCharAt(c, fill);
+            }
+        }));
+    }
+
+    //插入列：在各行的column处插入text，行长不足时先以空格补齐
+    public TextChange insertColumn(int startLine, int endLine, int column, String text) {
+        checkBlock(startLine, endLine, column, column);
+        int last = Math.min(endLine, textModel.getTotalLines() - 1);
+        if (startLine > last) return null;
+        return textModel.runAtomically(() -> rewriteRows(startLine, last, (line, r) -> {
+            pad(r, column);
+            r.insert(column, text);
+        }));
+    }
+
+    /*
+     移动/复制的公共实现：先把列块各行首尾相接提取到block（各行的结束位置记入ends），
+     再对源区与目标区逐行改写：源行删除列区（仅移动），目标行补齐后插入对应的列块内容。
+     */
+    private TextChange transfer(int startLine, int endLine, int startCol, int endCol,
+                                int targetLine, int targetCol, boolean removeSource) {
+        checkBlock(startLine, endLine, startCol, endCol);
+        if (targetLine < 0 || targetCol < 0) {
+            throw new IllegalArgumentException("target index out of bounds");
+        }
+        int count = endLine - startLine + 1;
+        StringBuilder block = new StringBuilder();
+        int[] ends = extract(block, startLine, endLine, startCol, endCol);
+        int targetEnd = targetLine + count - 1;
+        RowEdit edit = (line, r) -> {
+            if (removeSource && line >= startLine && line <= endLine) {
+                deleteColumns(r, startCol, endCol);
+            }
+            if (line >= targetLine && line <= targetEnd) {
+                int i = line - targetLine;
+                pad(r, targetCol);
+                r.insert(targetCol, block, i == 0 ? 0 : ends[i - 1], ends[i]);
+            }
+        };
+        return textModel.runAtomically(() -> {
+            // 超出文档的源行没有内容可删，不参与改写
+            int sourceEnd = removeSource ? Math.min(endLine, textModel.getTotalLines() - 1) : -1;
+            if (sourceEnd < startLine || (startLine <= targetEnd + 1 && targetLine <= sourceEnd + 1)) {
+                rewriteRows(sourceEnd < startLine ? targetLine : Math.min(startLine, targetLine),
+                        Math.max(sourceEnd, targetEnd), edit);
+            } else if (startLine > targetLine) {
+                // 源区与目标区不相接：先改写靠后的区间，靠前区间的偏移不受影响
+                rewriteRows(startLine, sourceEnd, edit);
+                rewriteRows(targetLine, targetEnd, edit);
+            } else {
+                rewriteRows(targetLine, targetEnd, edit);
+                rewriteRows(startLine, sourceEnd, edit);
+            }
+        });
+    }
+
+    //把各行[startCol, min(endCol, 行长))的文本依次追加到block，返回各行内容在block中的结束位置
+    private int[] extract(StringBuilder block, int startLine, int endLine, int startCol, int endCol) {
+        int[] ends = new int[endLine - startLine + 1];
+        int total = textModel.getTotalLines();
+        if (startLine < total) {
+            // 源行区间一次读出后逐行截取
+            int spanStart = textModel.getLineStartOffset(startLine);
+            int spanEnd = textModel.lineColToOffset(Math.min(endLine, total - 1), Integer.MAX_VALUE);
+            StringBuilder src = new StringBuilder(spanEnd - spanStart);
+            textModel.appendText(src, spanStart, spanEnd - spanStart);
+            int pos = 0;
+            for (int line = startLine; line <= endLine && line < total; line++) {
+                int lineEnd = indexOfLineFeed(src, pos);
+                if (startCol < lineEnd - pos) {
+                    block.append(src, pos + startCol, Math.min(pos + endCol, lineEnd));
+                }
+                pos = lineEnd + 1;
+                ends[line - startLine] = block.length();
+            }
+        }
+        for (int i = Math.max(total - startLine, 0); i < ends.length; i++) {
+            ends[i] = block.length(); // 超出文档的行没有内容
+        }
+        return ends;
+    }
+
+    /*
+     逐行改写[from, to]：一次读出这些行的原文，每行复制到行缓冲交给edit改写后写入输出，
+     最后以一次拼接替换原区间。超出文档的行视为空行，在文档末尾依次补出。
+     */
+    private void rewriteRows(int from, int to, RowEdit edit) {
+        int total = textModel.getTotalLines();
+        from = Math.min(from, total);
+        int spanStart = from < total ? textModel.getLineStartOffset(from) : textModel.getLength();
+        int spanEnd = from < total ? textModel.lineColToOffset(Math.min(to, total - 1), Integer.MAX_VALUE) : spanStart;
+        StringBuilder src = new StringBuilder(spanEnd - spanStart);
+        textModel.appendText(src, spanStart, spanEnd - spanStart);
+        StringBuilder out = new StringBuilder(src.length() + 16 * (to - from + 1));
+        StringBuilder row = new StringBuilder();
+        int pos = 0;
+        for (int line = from; line <= to; line++) {
+            row.setLength(0);
+            if (line < total) {
+                int lineEnd = indexOfLineFeed(src, pos);
+                row.append(src, pos, lineEnd);
+                pos = lineEnd + 1;
+            }
+            if (line > from || line >= total) out.append('\n');
+            edit.apply(line, row);
+            out.append(row);
+        }
+        textModel.replaceText(spanStart, spanEnd - spanStart, out.toString());
+    }
+
+    //从from起的下一个换行位置，没有时为末尾
+    private static int indexOfLineFeed(StringBuilder sb, int from) {
+        int n = sb.length();
+        for (int i = from; i < n; i++) {
+            if (sb.charAt(i) == '\n') return i;
+        }
+        return n;
+    }
+
+    //删除行内[startCol, min(endCol, 行长))；行长不足startCol时不变
+    private static void deleteColumns(StringBuilder r, int startCol, int endCol) {
+        if (startCol < r.length()) {
+            r.delete(startCol, Math.min(endCol, r.length()));
+        }
+    }
+
+    //以空格补齐到width列
+    private static void pad(StringBuilder r, int width) {
+        for (int i = r.length(); i < width; i++) {
+            r.append(' ');
+        }
+    }
+
+    private static void checkBlock(int startLine, int endLine, int startCol, int endCol) {
+        if (startLine < 0 || endLine < startLine) {
+            throw new IllegalArgumentException("line index out of bounds");
+        }
+        if (startCol < 0 || endCol < startCol) {
+            throw new IllegalArgumentException("column index out of bounds");
+        }
+    }
+}
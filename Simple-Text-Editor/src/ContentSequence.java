@@ -0,0 +1,57 @@
+/*
+ 模型内容的字符序列视图：供正则等按 CharSequence 工作的算法跨行访问全文。
+ - 不拼接全文，按 BLOCK 大小对齐分块读取，只缓存当前块；顺序访问时每块只读取一次
+ - 应基于模型快照创建，遍历期间内容不变
+ - 非线程安全：每个遍历者使用自己的实例
+ */
+public class ContentSequence implements CharSequence {
+    private static final int BLOCK = 1 << 16; // 分块大小（字符）
+
+    private final TextModel snapshot;
+    private final int start, end; // 视图在全文中的范围
+    private String block = "";    // 当前缓存块
+    private int blockStart = 0;   // 缓存块在全文中的起始偏移
+
+    //整个文档的视图
+    public ContentSequence(TextModel snapshot) {
+        this(snapshot, 0, snapshot.getLength());
+    }
+
+    private ContentSequence(TextModel snapshot, int start, int end) {
+        this.snapshot = snapshot;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= end - start) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + (end - start));
+        }
+        int offset = start + index;
+        if (offset < blockStart || offset >= blockStart + block.length()) {
+            blockStart = offset & -BLOCK;
+            block = snapshot.getText(blockStart, Math.min(BLOCK, snapshot.getLength() - blockStart));
+        }
+        return block.charAt(offset - blockStart);
+    }
+
+    //子序列同样是视图，不复制文本
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > end - start || from > to) {
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + "), length " + (end - start));
+        }
+        return new ContentSequence(snapshot, start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+        return snapshot.getText(start, end - start);
+    }
+}
@@ -9,37 +9,33 @@ public class DeleteService {
         this.textModel = model;
     }
 
-    //删除指定行内的一段字符
-    public void deleteChars(int lineIndex, int startCol, int length) {
-        String line = textModel.getLine(lineIndex);
-        if (startCol >= line.length()) return;
-
-        int endCol = Math.min(startCol + length, line.length());
-        String newLine = line.substring(0, startCol) + line.substring(endCol);
-        textModel.updateLine(lineIndex, newLine);
+    //删除指定行内的一段字符，返回受影响区间；区间越过行尾或行号越界时抛出IllegalArgumentException
+    public TextChange deleteChars(int lineIndex, int startCol, int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("negative length: " + length);
+        }
+        int start = textModel.checkedLineColToOffset(lineIndex, startCol);
+        int end = textModel.checkedLineColToOffset(lineIndex, startCol + length);
+        return textModel.runAtomically(() -> textModel.deleteText(start, end - start));
     }
 
     /*
     删除文本块（可能跨行）
     单行：直接删除区间；多行：首行保留左段与末行右段并拼接，删除中间行。
+    起止行列换算为全文偏移后一次删除，返回受影响区间。
+    行列越界或结束位置在起始位置之前时抛出IllegalArgumentException，不做截断。
      */
-    public void deleteTextBlock(int startLine, int startCol, int endLine, int endCol) {
-        if (startLine == endLine) {
-            // 单行删除
-            deleteChars(startLine, startCol, endCol - startCol);
-        } else {
-            // 多行删除
-            String firstLine = textModel.getLine(startLine);
-            String lastLine = textModel.getLine(endLine);
-
-            // 更新首行
-            String newFirstLine = firstLine.substring(0, startCol) + lastLine.substring(endCol);
-            textModel.updateLine(startLine, newFirstLine);
-
-            // 删除中间行：从首行之后开始逐一删除
-            for (int i = startLine + 1; i <= endLine; i++) {
-                textModel.deleteLine(startLine + 1);
-            }
+    public TextChange deleteTextBlock(int startLine, int startCol, int endLine, int endCol) {
+        int start = textModel.checkedLineColToOffset(startLine, startCol);
+        int end = textModel.checkedLineColToOffset(endLine, endCol);
+        if (end < start) {
+            throw new IllegalArgumentException("block end (" + endLine + ", " + endCol
+                    + ") is before start (" + startLine + ", " + startCol + ")");
         }
+        return textModel.runAtomically(() -> {
+            if (end > start) {
+                textModel.deleteText(start, end - start);
+            }
+        });
     }
 }
@@ -1,32 +1,447 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
 
 /*
  文件服务：负责将模型内容与磁盘文件进行读写同步。
- 读取时按行拼接为单一字符串；写入时直接输出模型的整段文本。
+ 读取时大文件优先内存映射（行内容按需解码），其余按行拼接为单一字符串；
+ 写入时把模型分块流式编码到同目录临时文件，落盘后原子替换目标文件。字符集默认为平台默认字符集，可设置。
+ 异步版本在虚拟线程中执行，支持进度回调与取消，结束后一次性切回调用方指定的线程。
  */
 
 public class FileService {
     // 依赖的文本模型：I/O完成后与该模型同步
     private TextModel textModel;
+    // 不小于该字节数的文件优先以内存映射方式打开
+    private static final long MAPPED_OPEN_THRESHOLD = TextStorage.LARGE_CONTENT_THRESHOLD;
+    // 进度回调间隔（字节/字符）
+    private static final long PROGRESS_STEP = 1 << 20;
+    // 后台I/O执行器：每个任务一个虚拟线程
+    private static final ExecutorService IO_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private int bufferSize = 64 * 1024; // 写出缓冲区字节数，可配置
+    // 读写使用的字符集：默认与原FileWriter一致为平台默认字符集
+    private volatile Charset charset = Charset.defaultCharset();
+    // 复用的编码器：无法编码的字符替换输出
+    private CharsetEncoder encoder = newEncoder(charset);
+    private long lastSaveBytes = 0;  // 最近一次保存写出的字节数
+    private long lastSaveNanos = 0;  // 最近一次保存耗时（纳秒）
+    private volatile String lastError; // 最近一次读写失败的原因，成功时为null
+    private volatile Mapping mapping;  // 最近一次以内存映射打开的文件
+
+    //映射打开的文件及其映射文本：覆盖保存该文件前需要先解除映射
+    private static final class Mapping {
+        final Path path;
+        final MappedText text;
+
+        Mapping(Path path, MappedText text) {
+            this.path = path;
+            this.text = text;
+        }
+    }
 
     public FileService(TextModel model) {
         this.textModel = model;
     }
 
-    //保存文件：将模型中的全文字符串写入到指定路径
+    //进度回调：processed为已处理量，total为总量（打开时按字节，保存时按字符）
+    public interface ProgressListener {
+        void onProgress(long processed, long total);
+    }
+
+    //流式写出的内容：向out写入全部文本
+    public interface ContentWriter {
+        void writeTo(Writer out) throws IOException;
+    }
+
+    //按写入文件的通道输出内容，返回写出的字节数
+    private interface ChannelWriter {
+        long write(FileChannel channel) throws IOException;
+    }
+
+    //设置读写文件使用的字符集（与正在进行的保存互斥）
+    public synchronized void setCharset(Charset charset) {
+        this.charset = charset;
+        this.encoder = newEncoder(charset);
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    private static CharsetEncoder newEncoder(Charset charset) {
+        return charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    //保存文件：在当前线程同步写出
     public boolean saveFile(String filePath) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {//创建文件写入器
-            writer.write(textModel.getContentAsString());//将文本模型的内容写入文件
+        return save(textModel, filePath, null);
+    }
+
+    /*
+     异步保存：在调用线程取模型快照（O(1)），由虚拟线程流式写出，期间可继续编辑。
+     完成后在callbackExecutor上回调结果；通过返回的Future取消时原文件不受影响，且不再回调。
+     */
+    public Future<Boolean> saveFileAsync(String filePath, ProgressListener progress,
+                                         Consumer<Boolean> onDone, Executor callbackExecutor) {
+        TextModel snapshot = textModel.snapshot();
+        return submit(() -> save(snapshot, filePath, progress), onDone, callbackExecutor);
+    }
+
+    //打开文件：在当前线程同步读取
+    public boolean openFile(String filePath) {
+        return load(textModel, filePath, null);
+    }
+
+    /*
+     异步打开：由虚拟线程把文件读入一个新模型，完成后在callbackExecutor上一次性接管其内容再回调；
+     加载期间与取消后当前模型保持不变。
+     */
+    public Future<Boolean> openFileAsync(String filePath, ProgressListener progress,
+                                         Consumer<Boolean> onDone, Executor callbackExecutor) {
+        return openFileAsync(filePath, progress, loaded -> {}, onDone, callbackExecutor);
+    }
+
+    /*
+     异步打开并准备：读入新模型后在同一后台任务中对它执行prepare（如建立视图文档），
+     两步都完成才接管内容并回调；任一步被取消时当前模型保持不变，prepare应响应线程中断。
+     */
+    public Future<Boolean> openFileAsync(String filePath, ProgressListener progress, Consumer<TextModel> prepare,
+                                         Consumer<Boolean> onDone, Executor callbackExecutor) {
+        TextModel loaded = new TextModel(textModel.getBackend());
+        return submit(() -> {
+            if (!load(loaded, filePath, progress)) return false;
+            prepare.accept(loaded);
+            return !Thread.currentThread().isInterrupted();
+        }, ok -> {
+            if (ok) textModel.replaceContent(loaded);
+            onDone.accept(ok);
+        }, callbackExecutor);
+    }
+
+    //提交后台任务：结束后切换到callbackExecutor收尾；在该线程上检查取消，已取消则跳过
+    private static Future<Boolean> submit(Callable<Boolean> job, Consumer<Boolean> finish, Executor callbackExecutor) {
+        FutureTask<Boolean> task = new FutureTask<>(job) {
+            @Override
+            protected void done() {
+                callbackExecutor.execute(() -> {
+                    if (isCancelled()) return;
+                    boolean ok;
+                    try {
+                        ok = get();
+                    } catch (Exception e) {
+                        ok = false;
+                    }
+                    finish.accept(ok);
+                });
+            }
+        };
+        IO_EXECUTOR.execute(task);
+        return task;
+    }
+
+    /*
+     保存source：按块读取文本，经复用的编码器原子写出；写入中途失败或被取消都不会破坏原文件。
+     编码器与统计字段共享，因此同一时间只允许一个保存任务。
+     */
+    private synchronized boolean save(TextModel source, String filePath, ProgressListener progress) {
+        long begin = System.nanoTime();
+        try {
+            long written = writeAtomically(Paths.get(filePath).toAbsolutePath(),
+                    channel -> writeContent(source, channel, progress));
+            lastSaveBytes = written;
+            lastSaveNanos = System.nanoTime() - begin;
+            lastError = null;
             return true;
         } catch (IOException e) {
-            e.printStackTrace();
+            lastError = describe(e);
+            report(e);
             return false;
         }
     }
 
-    //打开文件：按行读取并以\n连接为全文，同步到模型
-    public boolean openFile(String filePath) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+    /*
+     流式写文件：body经按当前字符集编码的Writer写出内容，与保存一样原子替换目标文件，
+     供不经过整个模型的输出使用（如BatchEditor的流式处理）。失败时抛出IOException，目标文件不变。
+     */
+    public void writeFile(String filePath, ContentWriter body) throws IOException {
+        CharsetEncoder fileEncoder = newEncoder(charset);
+        try {
+            writeAtomically(Paths.get(filePath).toAbsolutePath(), channel -> {
+                // 关闭Writer只冲刷编码器与缓冲，通道由writeAtomically落盘后关闭
+                OutputStream stream = new FilterOutputStream(Channels.newOutputStream(channel)) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                };
+                try (Writer out = new BufferedWriter(new OutputStreamWriter(stream, fileEncoder), bufferSize)) {
+                    body.writeTo(out);
+                }
+                return channel.position();
+            });
+            lastError = null;
+        } catch (IOException e) {
+            lastError = describe(e);
+            throw e;
+        }
+    }
+
+    /*
+     原子写文件：由body写入同目录下的临时文件，强制落盘后复制原文件权限并替换目标文件；
+     任何一步失败（包括body抛出的运行时异常）或被取消时删除临时文件，目标文件保持不变。
+     */
+    private long writeAtomically(Path target, ChannelWriter body) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        boolean replaced = false;
+        try {
+            long written;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                written = body.write(channel);
+                channel.force(true);// 数据落盘后再替换
+            }
+            copyPermissions(target, temp);
+            replace(temp, target);
+            replaced = true;
+            return written;
+        } finally {
+            if (!replaced) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignore) {}
+            }
+        }
+    }
+
+    /*
+     用temp替换target。Windows上被内存映射的文件不能被替换（覆盖保存刚以映射方式打开的大文件），
+     此时先把映射内容复制到堆内解除映射（模型及其快照改读堆内副本），请求GC释放映射区后重试。
+     映射区的释放是异步的，重试数次仍失败时给出明确的错误原因。
+     */
+    private void replace(Path temp, Path target) throws IOException {
+        try {
+            move(temp, target);
+            return;
+        } catch (FileSystemException e) {
+            Mapping m = mapping;
+            if (m == null || !isSameFile(target, m.path)) throw e;
+            m.text.detach();
+            mapping = null;
+        }
+        for (int attempt = 1; ; attempt++) {
+            System.gc(); // 映射区不可达后由GC解除映射
+            try {
+                move(temp, target);
+                return;
+            } catch (FileSystemException e) {
+                if (attempt == 5) {
+                    throw new IOException("cannot replace " + target
+                            + ": the file is still memory-mapped (" + e.getMessage() + ")", e);
+                }
+            }
+            try {
+                Thread.sleep(100L * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("save cancelled");
+            }
+        }
+    }
+
+    private static boolean isSameFile(Path a, Path b) {
+        try {
+            return Files.isSameFile(a, b);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    //原子重命名，文件系统不支持时退化为普通替换
+    private static void move(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    //最近一次读写失败的原因（用于错误提示），最近一次成功时为null
+    public String getLastError() {
+        return lastError;
+    }
+
+    //设置写出缓冲区大小（字节）
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 1024) {
+            throw new IllegalArgumentException("buffer size too small: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    //最近一次保存写出的字节数
+    public long getLastSaveBytes() {
+        return lastSaveBytes;
+    }
+
+    //最近一次保存的吞吐量（MB/s），尚未保存时为0
+    public double getLastSaveThroughput() {
+        if (lastSaveNanos == 0) return 0;
+        return lastSaveBytes / (1024.0 * 1024.0) / (lastSaveNanos / 1e9);
+    }
+
+    //把source全文分块编码写入channel，返回写出的字节数
+    private long writeContent(TextModel source, FileChannel channel, ProgressListener progress) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(bufferSize);
+        encoder.reset();
+        long written = 0;
+        long total = source.getLength();
+        long processed = 0;
+        long reported = 0;
+        CharBuffer pending = null; // 块末尾被截断的高位代理字符，与下一块首字符一起编码
+        Iterator<CharBuffer> chunks = source.contentChunks();
+        while (chunks.hasNext()) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("save cancelled");
+            }
+            CharBuffer chunk = chunks.next();
+            if (!chunk.hasRemaining()) continue;
+            processed += chunk.remaining();
+            if (progress != null && processed - reported >= PROGRESS_STEP) {
+                progress.onProgress(processed, total);
+                reported = processed;
+            }
+            if (pending != null) {
+                pending.put(chunk.get()).flip();
+                written += encode(pending, out, channel, false);
+                pending = null;
+            }
+            written += encode(chunk, out, channel, false);
+            if (chunk.hasRemaining()) {
+                pending = CharBuffer.allocate(2).put(chunk.get());
+            }
+        }
+        CharBuffer last = pending == null ? CharBuffer.allocate(0) : pending.flip();
+        written += encode(last, out, channel, true);
+        while (encoder.flush(out).isOverflow()) {
+            written += drain(out, channel);
+        }
+        if (progress != null) progress.onProgress(total, total);
+        return written + drain(out, channel);
+    }
+
+    //编码一块字符，输出缓冲区满时写出到channel，返回写出的字节数
+    private long encode(CharBuffer in, ByteBuffer out, FileChannel channel, boolean endOfInput) throws IOException {
+        long written = 0;
+        while (true) {
+            CoderResult result = encoder.encode(in, out, endOfInput);
+            if (result.isOverflow()) {
+                written += drain(out, channel);
+            } else if (result.isUnderflow()) {
+                return written;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    //把输出缓冲区中的字节全部写入channel
+    private static long drain(ByteBuffer out, FileChannel channel) throws IOException {
+        out.flip();
+        long n = out.remaining();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+        return n;
+    }
+
+    //尽量保留原文件的权限（临时文件默认仅所有者可读写）
+    static void copyPermissions(Path from, Path to) {
+        try {
+            if (Files.exists(from)) {
+                Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+            }
+        } catch (UnsupportedOperationException | IOException ignore) {}
+    }
+
+    //读取文件到target：大文件优先内存映射，不满足映射条件时按行读取
+    private boolean load(TextModel target, String filePath, ProgressListener progress) {
+        if (new File(filePath).length() >= MAPPED_OPEN_THRESHOLD && loadMapped(target, filePath, progress, false)) {
+            return true;
+        }
+        if (Thread.currentThread().isInterrupted()) return false; // 已取消，不再回退
+        return loadByLines(target, filePath, progress);
+    }
+
+    /*
+     以内存映射方式打开：一次顺序扫描建立换行位置表，全文不复制、不拆行，
+     行内容在读取时才从映射区解码，换行与解码结果与按行读取一致。
+     文件无法按UTF-8解码（含非法序列，或字符集不是UTF-8而文件含非ASCII字节）时返回false；
+     字符集既不是UTF-8也不是平台默认字符集时不映射，同样返回false。
+     */
+    public boolean openFileMapped(String filePath) {
+        return loadMapped(textModel, filePath, null, false);
+    }
+
+    //exactOnly为true时只接受与文件逐字节对应的映射（纯ASCII且不含\r），供需要原样保留换行符的调用方使用
+    public boolean openFileMapped(String filePath, boolean exactOnly) {
+        return loadMapped(textModel, filePath, null, exactOnly);
+    }
+
+    private boolean loadMapped(TextModel target, String filePath, ProgressListener progress, boolean exactOnly) {
+        Charset fileCharset = charset;
+        if (!StandardCharsets.UTF_8.equals(fileCharset) && !fileCharset.equals(Charset.defaultCharset())) {
+            return false; // 其他显式指定的字符集（如UTF-16）未必与ASCII兼容，按字符集逐行读取
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedText text = MappedText.scan(channel,
+                    progress == null ? null : done -> progress.onProgress(done, size), fileCharset);
+            if (text == null || (exactOnly && !text.isExact())) return false;
+            target.setContent(text);
+            mapping = new Mapping(Paths.get(filePath).toAbsolutePath(), text);
+            return true;
+        } catch (IOException e) {
+            lastError = describe(e);
+            report(e);
+            return false;
+        }
+    }
+
+    //按行读取并以\n连接为全文，同步到模型
+    private boolean loadByLines(TextModel target, String filePath, ProgressListener progress) {
+        File file = new File(filePath);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ProgressInputStream(new FileInputStream(file), file.length(), progress), charset))) {
             StringBuilder sb = new StringBuilder();//用于拼接全文的字符串
             String line;
             boolean first = true;
@@ -37,11 +452,72 @@ public class FileService {
             }
 
             // 同步到模型（空文件会在模型中保持一个空行）
-            textModel.setContentFromString(sb.toString());
+            target.setContentFromString(sb.toString());
+            lastError = null;
             return true;
         } catch (IOException e) {
-            e.printStackTrace();
+            lastError = describe(e);
+            report(e);
             return false;
         }
     }
+
+    //错误提示文本：文件系统异常的消息只含路径，补上原因
+    private static String describe(IOException e) {
+        if (e instanceof FileSystemException && ((FileSystemException) e).getReason() == null) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    //输出I/O异常；取消导致的中断属于正常结束，不输出
+    private static void report(IOException e) {
+        if (!Thread.currentThread().isInterrupted()) {
+            e.printStackTrace();
+        }
+    }
+
+    //统计已读取字节数的输入流：定期回调进度，线程被中断（取消）时终止读取
+    private static final class ProgressInputStream extends FilterInputStream {
+        private final long total;
+        private final ProgressListener progress;
+        private long processed = 0;
+        private long reported = 0;
+
+        ProgressInputStream(InputStream in, long total, ProgressListener progress) {
+            super(in);
+            this.total = total;
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkCancelled();
+            int b = super.read();
+            if (b >= 0) advance(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkCancelled();
+            int n = super.read(b, off, len);
+            if (n > 0) advance(n);
+            return n;
+        }
+
+        private void checkCancelled() throws InterruptedIOException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("open cancelled");
+            }
+        }
+
+        private void advance(int n) {
+            processed += n;
+            if (progress != null && (processed - reported >= PROGRESS_STEP || processed == total)) {
+                progress.onProgress(processed, total);
+                reported = processed;
+            }
+        }
+    }
 }
@@ -0,0 +1,317 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Highlighter;
+import javax.swing.text.JTextComponent;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ 增量查找栏：输入即查找，查找在后台线程执行，匹配结果分批高亮。
+ - 查询变化时立即取消进行中的查找，过期结果按查询代号丢弃
+ - 新查询是上一次完成查询的扩展（且文档未变）时，只在上一次的结果中筛选
+ - 先查视口可见范围并立即高亮，再查全文其余部分
+ - 结果为全部出现位置（允许重叠，保证扩展查询的结果是原结果的子集）
+ - 高亮由一个自绘 Highlighter 画笔完成，每次重绘只画视口内的匹配，匹配数量不受限制
+ */
+public class FindBar extends JPanel implements TextModelListener {
+    private static final int SCAN_BLOCK = 1 << 16;  // 两次取消检查之间扫描的匹配起点数
+    private static final int BATCH = 512;           // 每批提交到事件线程的匹配数
+    private static final Color HIGHLIGHT = new Color(255, 230, 120); // 匹配高亮色
+
+    // 查找线程：单线程执行，守护线程不阻止程序退出
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "find-bar");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final JTextArea textArea;
+    private final TextModel textModel;
+    private final JTextField queryField = new JTextField(24);
+    private final JCheckBox matchCaseBox = new JCheckBox("Match case");
+    private final JLabel resultLabel = new JLabel(" ");
+
+    // 以下字段只在事件线程访问
+    private final List<int[]> runs = new ArrayList<>(); // 已收到的匹配起点：每批内升序
+    private int matchLength;         // 当前查询的匹配长度
+    private Object highlightTag;     // 高亮画笔在Highlighter中的标记，栏关闭时为null
+    private Future<?> running;       // 进行中的查找
+    private int generation = 0;      // 查询代号：每次查询或编辑递增
+    private int found = 0;           // 当前查询已收到的匹配数
+    private String lastQuery;        // 上一次完成的查询
+    private boolean lastIgnoreCase;  // 上一次完成查询的大小写选项
+    private int[] lastResults;       // 上一次完成查询的全部匹配起点（升序），文档变化后为null
+
+    public FindBar(JTextArea textArea, TextModel model) {
+        super(new FlowLayout(FlowLayout.LEFT, 6, 2));
+        this.textArea = textArea;
+        this.textModel = model;
+        JButton closeButton = new JButton("Close");
+        closeButton.setFocusable(false);
+        add(new JLabel("Find:"));
+        add(queryField);
+        add(matchCaseBox);
+        add(resultLabel);
+        add(closeButton);
+
+        queryField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                search();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                search();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        matchCaseBox.addActionListener(e -> search());
+        queryField.addActionListener(e -> selectNext()); // 回车跳到下一个匹配
+        queryField.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "close");
+        queryField.getActionMap().put("close", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                close();
+            }
+        });
+        closeButton.addActionListener(e -> close());
+        model.addTextModelListener(this);
+        setVisible(false);
+    }
+
+    //显示查找栏并聚焦输入框；已有查询时重新查找
+    public void open() {
+        if (highlightTag == null) {
+            try {
+                highlightTag = textArea.getHighlighter().addHighlight(0, 0, new MatchPainter());
+            } catch (BadLocationException ignore) {
+            }
+        }
+        setVisible(true);
+        revalidate();
+        queryField.requestFocusInWindow();
+        queryField.selectAll();
+        if (!queryField.getText().isEmpty()) search();
+    }
+
+    //关闭查找栏：取消查找并清除高亮
+    public void close() {
+        cancelRunning();
+        generation++;
+        clearHighlights();
+        if (highlightTag != null) {
+            textArea.getHighlighter().removeHighlight(highlightTag);
+            highlightTag = null;
+        }
+        setVisible(false);
+        textArea.requestFocusInWindow();
+    }
+
+    //文档被编辑：结果的偏移已失效，取消进行中的查找并清除高亮，回车时重新查找
+    @Override
+    public void linesReplaced(TextModel model, int firstLine, int removedLines, int insertedLines) {
+        if (lastResults == null && runs.isEmpty() && running == null) return;
+        cancelRunning();
+        generation++;
+        clearHighlights();
+        lastResults = null;
+        lastQuery = null;
+        resultLabel.setText(" ");
+    }
+
+    /*
+     发起查找：取消进行中的查找，在模型快照上后台执行。
+     */
+    private void search() {
+        cancelRunning();
+        int gen = ++generation;
+        clearHighlights();
+        String query = queryField.getText();
+        if (query.isEmpty()) {
+            resultLabel.setText(" ");
+            return;
+        }
+        boolean ignoreCase = !matchCaseBox.isSelected();
+        SearchEngine engine = HorspoolSearch.of(query, ignoreCase, false);
+        TextModel snapshot = textModel.snapshot();
+        int[] subset = lastResults != null && lastIgnoreCase == ignoreCase && query.startsWith(lastQuery)
+                ? lastResults : null;
+        matchLength = query.length();
+        int[] visible = visibleRange(snapshot.getLength());
+        resultLabel.setText("Searching...");
+        running = executor.submit(() -> runSearch(gen, query, ignoreCase, engine, snapshot, subset, visible));
+    }
+
+    /*
+     后台查找：有可用的上一次结果时逐个验证，否则先扫描可见范围再扫描其余部分。
+     每扫描一块检查一次中断（取消）。
+     */
+    private void runSearch(int gen, String query, boolean ignoreCase, SearchEngine engine,
+                           TextModel snapshot, int[] subset, int[] visible) {
+        Hits all = new Hits();
+        Hits batch = new Hits();
+        ContentSequence text = new ContentSequence(snapshot);
+        if (subset != null) {
+            for (int i = 0; i < subset.length; i++) {
+                if ((i & 4095) == 0 && Thread.currentThread().isInterrupted()) return;
+                int s = subset[i];
+                if (engine.find(text, s, s + 1) == s) {
+                    all.add(s);
+                    batch.add(s);
+                    if (batch.size >= BATCH) publish(gen, batch);
+                }
+            }
+            publish(gen, batch);
+        } else {
+            int length = snapshot.getLength();
+            int[][] ranges = {{visible[0], visible[1]}, {0, visible[0]}, {visible[1], length}};
+            for (int[] range : ranges) {
+                for (int pos = range[0]; pos < range[1]; ) {
+                    if (Thread.currentThread().isInterrupted()) return;
+                    int limit = (int) Math.min((long) pos + SCAN_BLOCK, range[1]);
+                    int s;
+                    while ((s = engine.find(text, pos, limit)) >= 0) {
+                        all.add(s);
+                        batch.add(s);
+                        if (batch.size >= BATCH) publish(gen, batch);
+                        pos = s + 1;
+                    }
+                    pos = limit;
+                }
+                publish(gen, batch); // 可见范围的结果立即提交
+            }
+        }
+        int[] results = all.toArray();
+        Arrays.sort(results);
+        SwingUtilities.invokeLater(() -> finish(gen, query, ignoreCase, results));
+    }
+
+    //把一批匹配提交到事件线程并重绘，随后清空批次
+    private void publish(int gen, Hits batch) {
+        if (batch.size == 0) return;
+        int[] offsets = batch.toArray();
+        batch.size = 0;
+        SwingUtilities.invokeLater(() -> {
+            if (gen != generation) return;
+            runs.add(offsets);
+            found += offsets.length;
+            resultLabel.setText(found + " matches...");
+            textArea.repaint();
+        });
+    }
+
+    //查找完成：以有序的完整结果替换各批次，并记录供扩展查询与跳转使用
+    private void finish(int gen, String query, boolean ignoreCase, int[] results) {
+        if (gen != generation) return;
+        running = null;
+        runs.clear();
+        runs.add(results);
+        lastQuery = query;
+        lastIgnoreCase = ignoreCase;
+        lastResults = results;
+        resultLabel.setText(results.length == 0 ? "No matches" : results.length + " matches");
+        textArea.repaint();
+    }
+
+    //选中光标之后的下一个匹配（到末尾后从头开始）
+    private void selectNext() {
+        if (lastResults == null || lastResults.length == 0 || !queryField.getText().equals(lastQuery)) return;
+        int i = Arrays.binarySearch(lastResults, textArea.getSelectionEnd());
+        i = i >= 0 ? i : -i - 1;
+        int start = lastResults[i < lastResults.length ? i : 0];
+        textArea.select(start, start + lastQuery.length());
+    }
+
+    //视口中可见文本的偏移范围
+    private int[] visibleRange(int length) {
+        Rectangle r = textArea.getVisibleRect();
+        int start = textArea.viewToModel2D(new Point(r.x, r.y));
+        int end = textArea.viewToModel2D(new Point(r.x + r.width, r.y + r.height));
+        start = Math.max(0, Math.min(start, length));
+        end = Math.max(start, Math.min(end < 0 ? length : end, length));
+        return new int[]{start, end};
+    }
+
+    private void cancelRunning() {
+        if (running != null) {
+            running.cancel(true);
+            running = null;
+        }
+    }
+
+    private void clearHighlights() {
+        runs.clear();
+        found = 0;
+        textArea.repaint();
+    }
+
+    /*
+     匹配高亮画笔：每次重绘只画与裁剪区域相交的匹配。
+     各批次内部升序，按批次二分定位到裁剪区域起点后顺序绘制。
+     */
+    private final class MatchPainter implements Highlighter.HighlightPainter {
+        @Override
+        public void paint(Graphics g, int p0, int p1, Shape bounds, JTextComponent c) {
+            if (runs.isEmpty()) return;
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) clip = bounds.getBounds();
+            int from = c.viewToModel2D(new Point(0, clip.y)) - matchLength;
+            int to = c.viewToModel2D(new Point(c.getWidth(), clip.y + clip.height));
+            g.setColor(HIGHLIGHT);
+            for (int[] run : runs) {
+                int i = Arrays.binarySearch(run, from);
+                for (i = i >= 0 ? i : -i - 1; i < run.length && run[i] <= to; i++) {
+                    paintMatch(g, c, run[i], run[i] + matchLength);
+                }
+            }
+        }
+
+        //画出[start, end)：跨越折行时分别画首段与末段
+        private void paintMatch(Graphics g, JTextComponent c, int start, int end) {
+            try {
+                Rectangle2D r0 = c.modelToView2D(start);
+                Rectangle2D r1 = c.modelToView2D(end);
+                if (r0 == null || r1 == null) return;
+                int h = (int) r0.getHeight();
+                if ((int) r0.getY() == (int) r1.getY()) {
+                    g.fillRect((int) r0.getX(), (int) r0.getY(), (int) (r1.getX() - r0.getX()), h);
+                } else {
+                    Insets in = c.getInsets();
+                    g.fillRect((int) r0.getX(), (int) r0.getY(), c.getWidth() - in.right - (int) r0.getX(), h);
+                    g.fillRect(in.left, (int) r1.getY(), (int) r1.getX() - in.left, (int) r1.getHeight());
+                }
+            } catch (BadLocationException ignore) {
+                // 偏移已超出文档（编辑后尚未清除），跳过
+            }
+        }
+    }
+
+    //匹配起点的动态数组
+    private static final class Hits {
+        int[] data = new int[64];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
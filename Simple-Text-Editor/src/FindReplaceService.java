@@ -1,48 +1,535 @@
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
 
 /*
 查找/替换服务：在文本模型上执行字符串查找与替换。
-查找逐行扫描；替换以整行为单位调用String.replace。
+查找由可替换的查找引擎（默认 Boyer-Moore-Horspool）在模型快照上分块扫描，
+大文档按行区间拆分后在 ForkJoinPool 中并行查找；
+可选的三元组索引（TrigramIndex）先缩小候选行再逐行验证，适合对同一文档反复查找；
+正则查找与替换逐行进行，支持捕获组引用（$1、${name}）；
+全部替换单遍扫描，所有替换合并为对模型的一次修改；
+跨行查找/替换的查找文本可包含换行，正则在全文视图（ContentSequence）上匹配，结果为起止行列区间。
 */
 
 public class FindReplaceService {
+    private static final int SCAN_BLOCK = 1 << 16; // 分块扫描时每块的匹配起点数
+    private static final int PARALLEL_THRESHOLD = 1 << 20; // 达到该字符数才并行查找
+    private static final int MIN_CHUNK = 1 << 18;          // 并行任务的最小字符数
+    private static final int MERGE_GAP = 64;               // 替换间隔不超过该字符数时并为一次拼接
+    private static final int MAX_SPLICE = 1 << 16;         // 一次拼接的新文本上限（字符）
 
     private TextModel textModel;
+    private TextChange lastChange; // 最近一次替换的受影响区间
+    private TrigramIndex index;    // 查找索引，未启用时为null
 
     public FindReplaceService(TextModel model) {
         this.textModel = model;
     }
 
-    //查找文本：返回所有匹配位置
+    //查找文本：返回所有匹配位置（区分大小写）
     public List<TextPosition> findText(String searchText) {
-        List<TextPosition> positions = new ArrayList<>();
+        return findText(searchText, false, false);
+    }
 
-        for (int i = 0; i < textModel.getTotalLines(); i++) {
-            String line = textModel.getLine(i);
-            int index = 0;
-            while ((index = line.indexOf(searchText, index)) != -1) {//在line字符串中从index位置开始查找searchText
-                positions.add(new TextPosition(i, index, searchText.length()));//i：当前行号; index：匹配的起始位置; searchText.length()：匹配文本的长度
-                index += searchText.length();
+    /*
+     查找文本：可选忽略大小写、全词匹配，返回所有匹配位置（文档顺序）。
+     大文档且查找文本不含换行（匹配不会跨行）时走并行路径，否则顺序扫描。
+     */
+    public List<TextPosition> findText(String searchText, boolean ignoreCase, boolean wholeWord) {
+        SearchEngine engine = HorspoolSearch.of(searchText, ignoreCase, wholeWord);
+        if (index != null && searchText.indexOf('\n') < 0) {
+            int[] candidates = index.candidateLines(searchText);
+            if (candidates != null) {
+                return findInLines(engine, candidates);
             }
         }
+        TextModel snapshot = textModel.snapshot();
+        if (snapshot.getLength() < PARALLEL_THRESHOLD || searchText.indexOf('\n') >= 0
+                || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return collect(new MatchIterator(snapshot, engine, 0, snapshot.getLength()));
+        }
+        // 任务粒度随文档规模变化：每个工作线程约分到4块，且不小于MIN_CHUNK
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        int chunkChars = Math.max(MIN_CHUNK, snapshot.getLength() / (parallelism * 4));
+        return ForkJoinPool.commonPool().invoke(
+                new ParallelFind(snapshot, engine, 0, snapshot.getTotalLines(), chunkChars));
+    }
 
+    /*
+     流式查找：返回按文档顺序逐个产生匹配的迭代器，扫描到首个匹配即可返回，
+     不必先扫描全文。迭代基于创建时的模型快照，之后的编辑不影响结果。
+     匹配互不重叠（下一次从上一匹配末尾继续）。
+     */
+    public Iterator<TextPosition> matches(SearchEngine engine) {
+        TextModel snapshot = textModel.snapshot();
+        return new MatchIterator(snapshot, engine, 0, snapshot.getLength());
+    }
+
+    /*
+     启用/停用查找索引：启用时为当前内容建立索引并随编辑增量维护，停用时释放。
+     */
+    public void setIndexEnabled(boolean enabled) {
+        if (enabled && index == null) {
+            index = new TrigramIndex(textModel);
+        } else if (!enabled && index != null) {
+            index.close();
+            index = null;
+        }
+    }
+
+    //当前的查找索引（用于查看内存占用等），未启用时为null
+    public TrigramIndex getIndex() {
+        return index;
+    }
+
+    //只在候选行内查找：逐行精确验证，行内匹配互不重叠
+    private List<TextPosition> findInLines(SearchEngine engine, int[] candidates) {
+        List<TextPosition> positions = new ArrayList<>();
+        int m = engine.patternLength();
+        for (int line : candidates) {
+            String text = textModel.getLine(line);
+            int found = engine.find(text, 0, text.length());
+            while (found >= 0) {
+                positions.add(new TextPosition(line, found, m));
+                found = engine.find(text, found + m, text.length());
+            }
+        }
         return positions;
     }
 
-    //替换
+    private static List<TextPosition> collect(Iterator<TextPosition> it) {
+        List<TextPosition> positions = new ArrayList<>();
+        while (it.hasNext()) {
+            positions.add(it.next());
+        }
+        return positions;
+    }
+
+    /*
+     并行查找任务：行区间[fromLine, toLine)的字符数超过chunkChars时二分为两个子任务，
+     否则在该区间内顺序查找。各区间以行边界划分，不跨行的匹配不会被切断，
+     结果按左、右顺序拼接即为文档顺序。
+     */
+    private static final class ParallelFind extends RecursiveTask<List<TextPosition>> {
+        private final TextModel snapshot;
+        private final SearchEngine engine;
+        private final int fromLine, toLine;
+        private final int chunkChars;
+
+        ParallelFind(TextModel snapshot, SearchEngine engine, int fromLine, int toLine, int chunkChars) {
+            this.snapshot = snapshot;
+            this.engine = engine;
+            this.fromLine = fromLine;
+            this.toLine = toLine;
+            this.chunkChars = chunkChars;
+        }
+
+        @Override
+        protected List<TextPosition> compute() {
+            int start = snapshot.getLineStartOffset(fromLine);
+            int end = toLine < snapshot.getTotalLines() ? snapshot.getLineStartOffset(toLine) : snapshot.getLength();
+            if (end - start <= chunkChars || toLine - fromLine < 2) {
+                return collect(new MatchIterator(snapshot, engine, start, end));
+            }
+            int mid = (fromLine + toLine) >>> 1;
+            ParallelFind right = new ParallelFind(snapshot, engine, mid, toLine, chunkChars);
+            right.fork();
+            List<TextPosition> result = new ParallelFind(snapshot, engine, fromLine, mid, chunkChars).compute();
+            result.addAll(right.join());
+            return result;
+        }
+    }
+
+    /*
+     分块匹配迭代器：在[rangeStart, rangeEnd)内查找，每块取 SCAN_BLOCK 个匹配起点对应的文本窗口（前后各多取1个字符作全词判断的上下文），
+     块内的匹配依次从同一窗口取出，块内无更多匹配时再读取下一块。
+     */
+    private static final class MatchIterator implements Iterator<TextPosition> {
+        private final TextModel snapshot;
+        private final SearchEngine engine;
+        private final int length;   // 快照全文长度
+        private final int rangeEnd; // 匹配必须在此之前结束
+        private int pos;            // 下一个允许的匹配起点
+        private String window;      // 当前块的文本窗口，null表示需要读取下一块
+        private int windowStart;    // 窗口在全文中的起始偏移
+        private int limit;          // 当前块匹配起点的上界（不含）
+        private int next = -2;      // 预取的下一个匹配起点：-2未预取，-1已结束
+
+        MatchIterator(TextModel snapshot, SearchEngine engine, int rangeStart, int rangeEnd) {
+            this.snapshot = snapshot;
+            this.engine = engine;
+            this.length = snapshot.getLength();
+            this.rangeEnd = rangeEnd;
+            this.pos = rangeStart;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == -2) next = advance();
+            return next >= 0;
+        }
+
+        @Override
+        public TextPosition next() {
+            int start = nextStart();
+            if (start < 0) throw new NoSuchElementException();
+            int[] lc = snapshot.offsetToLineCol(start);
+            return new TextPosition(lc[0], lc[1], engine.patternLength());
+        }
+
+        //下一个匹配在全文中的起始偏移，无更多匹配时返回-1（不换算行列）
+        int nextStart() {
+            hasNext();
+            int start = next;
+            if (start >= 0) next = -2;
+            return start;
+        }
+
+        private int advance() {
+            int m = engine.patternLength();
+            while (true) {
+                if (window == null) {
+                    if (pos + m > rangeEnd) return -1;
+                    limit = (int) Math.min((long) pos + SCAN_BLOCK, rangeEnd - m + 1L);
+                    windowStart = Math.max(pos - 1, 0);
+                    int windowEnd = Math.min(limit + m, length);
+                    window = snapshot.getText(windowStart, windowEnd - windowStart);
+                }
+                int found = engine.find(window, pos - windowStart, limit - windowStart);
+                if (found >= 0) {
+                    int start = windowStart + found;
+                    pos = start + m;
+                    return start;
+                }
+                pos = Math.max(pos, limit);
+                window = null;
+            }
+        }
+    }
+
+    //替换（区分大小写）：返回替换的次数；受影响区间可通过getLastChange获取
     public int replaceService(String findText, String replaceText) {
-        int replaceCount = 0;
-
-        for (int i = 0; i < textModel.getTotalLines(); i++) {
-            String line = textModel.getLine(i);
-            if (line.contains(findText)) {
-                String newLine = line.replace(findText, replaceText);//替换findText为replaceText
-                textModel.updateLine(i, newLine);//更新文本行
-                replaceCount++;
+        return replaceAll(findText, replaceText, false, false);
+    }
+
+    /*
+     全部替换：单遍扫描全文，每个匹配在模型中就地拼接，整组作为一次变更提交（一次事件、一条撤销记录）。
+     两次匹配之间的原文不复制（间隔很短的相邻匹配除外），返回真实的替换次数。
+     */
+    public int replaceAll(String findText, String replaceText, boolean ignoreCase, boolean wholeWord) {
+        SearchEngine engine = HorspoolSearch.of(findText, ignoreCase, wholeWord);
+        TextModel snapshot = textModel.snapshot();
+        MatchIterator it = new MatchIterator(snapshot, engine, 0, snapshot.getLength());
+        int m = engine.patternLength();
+        Splicer splicer = new Splicer(snapshot);
+        int[] count = {0};
+        lastChange = textModel.runAtomically(() -> {
+            int start;
+            while ((start = it.nextStart()) >= 0) {
+                splicer.replace(start, start + m, replaceText);
+                count[0]++;
+            }
+            splicer.flush();
+        });
+        return count[0];
+    }
+
+    /*
+     按文档顺序把快照中的[start, end)替换为新文本，写入当前模型（须在批量编辑中使用）。
+     相邻替换之间的原文不超过MERGE_GAP时并入同一次拼接，以免密集匹配把存储切成大量碎片；
+     否则各自拼接，其间未变化的文本不复制。快照偏移按已写入的长度差换算为模型偏移。
+     */
+    private final class Splicer {
+        private final TextModel snapshot;
+        private final StringBuilder out = new StringBuilder(); // 待写入的新文本
+        private int spliceStart = -1; // 待写入区间在快照中的起点，-1表示没有
+        private int spliceEnd;        // 待写入区间在快照中的终点
+        private int shift;            // 已写入部分造成的长度差（新-旧）
+
+        Splicer(TextModel snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        void replace(int start, int end, CharSequence text) {
+            if (spliceStart >= 0 && start - spliceEnd <= MERGE_GAP && out.length() < MAX_SPLICE) {
+                snapshot.appendText(out, spliceEnd, start - spliceEnd); // 短间隔的原文
+            } else {
+                flush();
+                spliceStart = start;
+            }
+            out.append(text);
+            spliceEnd = end;
+        }
+
+        void flush() {
+            if (spliceStart < 0) return;
+            textModel.replaceText(spliceStart + shift, spliceEnd - spliceStart, out.toString());
+            shift += out.length() - (spliceEnd - spliceStart);
+            out.setLength(0);
+            spliceStart = -1;
+        }
+    }
+
+    /*
+     正则流式查找：按行匹配（^、$对应行首行尾），返回按文档顺序逐个产生匹配的迭代器。
+     迭代基于创建时的模型快照；整个迭代过程复用同一个Matcher。
+     */
+    public Iterator<TextPosition> regexMatches(String regex, boolean ignoreCase) {
+        return regexMatches(regex, ignoreCase, false);
+    }
+
+    //wholeWord为true时只保留两侧不是单词字符的匹配
+    public Iterator<TextPosition> regexMatches(String regex, boolean ignoreCase, boolean wholeWord) {
+        return new RegexMatchIterator(textModel.snapshot(),
+                RegexSearch.of(regex, ignoreCase, false, wholeWord).newMatcher());
+    }
+
+    //正则查找：返回所有匹配位置
+    public List<TextPosition> findRegex(String regex, boolean ignoreCase) {
+        return findRegex(regex, ignoreCase, false);
+    }
+
+    public List<TextPosition> findRegex(String regex, boolean ignoreCase, boolean wholeWord) {
+        return collect(regexMatches(regex, ignoreCase, wholeWord));
+    }
+
+    //正则计数：只统计匹配数，不为匹配分配结果对象
+    public long countRegex(String regex, boolean ignoreCase) {
+        RegexSearch search = RegexSearch.of(regex, ignoreCase);
+        TextModel snapshot = textModel.snapshot();
+        long count = 0;
+        for (int i = 0; i < snapshot.getTotalLines(); i++) {
+            Matcher m = search.matcher(snapshot.getLine(i));
+            while (m.find()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /*
+     正则替换：逐行替换全部匹配，replacement中可用$n、${name}引用捕获组。
+     各行只扫描一次，每个匹配就地拼接，整组作为一次变更提交，未变化的文本不复制。
+     返回替换的匹配数；受影响区间可通过getLastChange获取。
+     */
+    public int replaceRegex(String regex, String replacement, boolean ignoreCase) {
+        return replaceRegex(regex, replacement, ignoreCase, false);
+    }
+
+    //wholeWord为true时只替换两侧不是单词字符的匹配
+    public int replaceRegex(String regex, String replacement, boolean ignoreCase, boolean wholeWord) {
+        RegexSearch search = RegexSearch.of(regex, ignoreCase, false, wholeWord);
+        TextModel snapshot = textModel.snapshot();
+        Splicer splicer = new Splicer(snapshot);
+        StringBuilder sb = new StringBuilder(); // 单个匹配的替换结果
+        int[] count = {0};
+        lastChange = textModel.runAtomically(() -> {
+            for (int i = 0; i < snapshot.getTotalLines(); i++) {
+                Matcher m = search.matcher(snapshot.getLine(i));
+                if (!m.find()) continue;
+                int lineStart = snapshot.getLineStartOffset(i);
+                do {
+                    sb.setLength(0);
+                    expandReplacement(m, replacement, sb);
+                    splicer.replace(lineStart + m.start(), lineStart + m.end(), sb);
+                    count[0]++;
+                } while (m.find());
+            }
+            splicer.flush();
+        });
+        return count[0];
+    }
+
+    /*
+     跨行流式查找：文本查找可包含换行，正则在整个文档的视图上匹配（^、$对应行首行尾，可跨行），
+     匹配以起止[行, 列]区间按文档顺序返回。迭代基于创建时的模型快照，不拼接全文。
+     wholeWord对两种查找都生效：匹配两侧不能是单词字符。
+     */
+    public Iterator<TextRange> rangeMatches(String query, boolean regex, boolean ignoreCase, boolean wholeWord) {
+        TextModel snapshot = textModel.snapshot();
+        if (regex) {
+            Matcher m = RegexSearch.of(query, ignoreCase, true, wholeWord).newMatcher()
+                    .reset(new ContentSequence(snapshot));
+            return new RangeIterator(snapshot, () -> m.find() ? new int[]{m.start(), m.end()} : null);
+        }
+        SearchEngine engine = HorspoolSearch.of(query, ignoreCase, wholeWord);
+        MatchIterator it = new MatchIterator(snapshot, engine, 0, snapshot.getLength());
+        return new RangeIterator(snapshot, () -> {
+            int start = it.nextStart();
+            return start < 0 ? null : new int[]{start, start + engine.patternLength()};
+        });
+    }
+
+    //跨行查找：返回所有匹配区间
+    public List<TextRange> findRanges(String query, boolean regex, boolean ignoreCase, boolean wholeWord) {
+        List<TextRange> ranges = new ArrayList<>();
+        Iterator<TextRange> it = rangeMatches(query, regex, ignoreCase, wholeWord);
+        while (it.hasNext()) {
+            ranges.add(it.next());
+        }
+        return ranges;
+    }
+
+    /*
+     跨行替换：返回替换次数，受影响区间可通过getLastChange获取。
+     文本查找走单遍的全部替换；正则先在全文视图上收集各匹配的区间与替换结果，
+     再在同一个变更中从后往前逐个替换（前面匹配的偏移不受后面替换影响）。
+     */
+    public int replaceRanges(String query, String replacement, boolean regex, boolean ignoreCase, boolean wholeWord) {
+        if (!regex) {
+            return replaceAll(query, replacement, ignoreCase, wholeWord);
+        }
+        TextModel snapshot = textModel.snapshot();
+        Matcher m = RegexSearch.of(query, ignoreCase, true, wholeWord).newMatcher()
+                .reset(new ContentSequence(snapshot));
+        List<int[]> spans = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        StringBuilder sb = new StringBuilder(); // 各匹配复用的替换结果缓冲
+        while (m.find()) {
+            sb.setLength(0);
+            expandReplacement(m, replacement, sb);
+            spans.add(new int[]{m.start(), m.end()});
+            texts.add(sb.toString());
+        }
+        if (spans.isEmpty()) {
+            lastChange = null;
+            return 0;
+        }
+        lastChange = textModel.runAtomically(() -> {
+            for (int i = spans.size() - 1; i >= 0; i--) {
+                int[] span = spans.get(i);
+                textModel.replaceText(span[0], span[1] - span[0], texts.get(i));
+            }
+        });
+        return spans.size();
+    }
+
+    /*
+     展开替换模板（与Matcher.appendReplacement规则一致）：$n、${name}引用捕获组，\转义下一个字符。
+     只输出替换结果本身，不复制两次匹配之间的原文。
+     模板非法或引用不存在的组时抛出IllegalArgumentException（appendReplacement对越界组号抛出的是IndexOutOfBoundsException）。
+     */
+    private static void expandReplacement(Matcher m, String replacement, StringBuilder sb) {
+        int i = 0;
+        while (i < replacement.length()) {
+            char c = replacement.charAt(i++);
+            if (c == '\\') {
+                if (i == replacement.length()) {
+                    throw new IllegalArgumentException("character to be escaped is missing");
+                }
+                sb.append(replacement.charAt(i++));
+            } else if (c != '$') {
+                sb.append(c);
+            } else if (i == replacement.length()) {
+                throw new IllegalArgumentException("Illegal group reference: group index is missing");
+            } else if (replacement.charAt(i) == '{') {
+                int close = replacement.indexOf('}', i);
+                if (close < 0) {
+                    throw new IllegalArgumentException("named capturing group is missing trailing '}'");
+                }
+                String group = m.group(replacement.substring(i + 1, close));
+                if (group != null) sb.append(group);
+                i = close + 1;
+            } else {
+                int digit = replacement.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new IllegalArgumentException("Illegal group reference");
+                }
+                if (digit > m.groupCount()) {
+                    throw new IllegalArgumentException("No group " + digit);
+                }
+                int group = digit;
+                i++;
+                // 尽可能多地读取数字，只要组号不超过组数
+                while (i < replacement.length()) {
+                    int d = replacement.charAt(i) - '0';
+                    if (d < 0 || d > 9 || group * 10 + d > m.groupCount()) break;
+                    group = group * 10 + d;
+                    i++;
+                }
+                String text = m.group(group);
+                if (text != null) sb.append(text);
+            }
+        }
+    }
+
+    //区间迭代器：从偏移对来源逐个取匹配，换算为起止行列
+    private static final class RangeIterator implements Iterator<TextRange> {
+        private final TextModel snapshot;
+        private final Supplier<int[]> source; // 下一个匹配的[起, 止)偏移，结束时返回null
+        private int[] next;
+        private boolean done;
+
+        RangeIterator(TextModel snapshot, Supplier<int[]> source) {
+            this.snapshot = snapshot;
+            this.source = source;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                next = source.get();
+                done = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public TextRange next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int[] start = snapshot.offsetToLineCol(next[0]);
+            int[] end = snapshot.offsetToLineCol(next[1]);
+            next = null;
+            return new TextRange(start[0], start[1], end[0], end[1]);
+        }
+    }
+
+    //正则匹配迭代器：逐行reset同一个Matcher，行内匹配取完再读下一行
+    private static final class RegexMatchIterator implements Iterator<TextPosition> {
+        private final TextModel snapshot;
+        private final Matcher matcher;
+        private int line = -1;      // 当前行号，-1表示尚未开始
+        private TextPosition next;  // 预取的下一个匹配
+
+        RegexMatchIterator(TextModel snapshot, Matcher matcher) {
+            this.snapshot = snapshot;
+            this.matcher = matcher;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) next = advance();
+            return next != null;
+        }
+
+        @Override
+        public TextPosition next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            TextPosition result = next;
+            next = null;
+            return result;
+        }
+
+        private TextPosition advance() {
+            while (true) {
+                if (line >= 0 && matcher.find()) {
+                    return new TextPosition(line, matcher.start(), matcher.end() - matcher.start());
+                }
+                if (++line >= snapshot.getTotalLines()) return null;
+                matcher.reset(snapshot.getLine(line));
             }
         }
-        return replaceCount;
+    }
+
+    //最近一次替换的受影响区间，无修改时为null
+    public TextChange getLastChange() {
+        return lastChange;
     }
 }
 
@@ -71,3 +558,38 @@ class TextPosition {
         return length;
     }
 }
+
+//区间描述：表示一次跨行匹配的起止行列（止点不含）。
+class TextRange {
+    private final int startLine;
+    private final int startColumn;
+    private final int endLine;
+    private final int endColumn;
+
+    public TextRange(int startLine, int startColumn, int endLine, int endColumn) {
+        this.startLine = startLine;
+        this.startColumn = startColumn;
+        this.endLine = endLine;
+        this.endColumn = endColumn;
+    }
+
+    //起始行索引
+    public int getStartLine() {
+        return startLine;
+    }
+
+    //起始列索引
+    public int getStartColumn() {
+        return startColumn;
+    }
+
+    //结束行索引
+    public int getEndLine() {
+        return endLine;
+    }
+
+    //结束列索引（不含）
+    public int getEndColumn() {
+        return endColumn;
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ Boyer-Moore-Horspool 查找引擎：按窗口末字符查跳转表，平均每次比较后跳过多个字符，
+ 模式串越长跳得越远。
+ - 跳转表按字符低8位分桶（桶内取最小跳距，结果保守但正确），大小固定为256
+ - 忽略大小写时模式串与文本逐字符做大小写折叠后比较
+ - 全词匹配要求匹配两侧不是单词字符（字母、数字、下划线）
+ 同一查询的引擎（含跳转表）按 LRU 缓存复用，重复查找无需重建。
+ */
+public final class HorspoolSearch implements SearchEngine {
+    private static final int CACHE_SIZE = 32; // 缓存的查询数
+
+    // 查询缓存：键为选项前缀 + 模式串
+    private static final Map<String, HorspoolSearch> CACHE = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, HorspoolSearch> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final char[] pattern;     // 模式串（忽略大小写时已折叠）
+    private final int[] shift;        // 跳转表：窗口末字符 → 右移距离
+    private final boolean ignoreCase; // 忽略大小写
+    private final boolean wholeWord;  // 全词匹配
+
+    private HorspoolSearch(String pattern, boolean ignoreCase, boolean wholeWord) {
+        this.ignoreCase = ignoreCase;
+        this.wholeWord = wholeWord;
+        int m = pattern.length();
+        this.pattern = new char[m];
+        for (int i = 0; i < m; i++) {
+            this.pattern[i] = fold(pattern.charAt(i));
+        }
+        // 除末字符外，每个字符的跳距为其到模式串末尾的距离；靠后出现的覆盖靠前的（取最小值）
+        this.shift = new int[256];
+        Arrays.fill(shift, m);
+        for (int i = 0; i < m - 1; i++) {
+            shift[this.pattern[i] & 0xFF] = m - 1 - i;
+        }
+    }
+
+    //获取查询对应的引擎（优先从缓存取），模式串不能为空
+    public static HorspoolSearch of(String pattern, boolean ignoreCase, boolean wholeWord) {
+        if (pattern == null || pattern.isEmpty()) {
+            throw new IllegalArgumentException("Search text must not be empty");
+        }
+        String key = (ignoreCase ? "i" : "-") + (wholeWord ? "w" : "-") + pattern;
+        synchronized (CACHE) {
+            return CACHE.computeIfAbsent(key, k -> new HorspoolSearch(pattern, ignoreCase, wholeWord));
+        }
+    }
+
+    @Override
+    public int patternLength() {
+        return pattern.length;
+    }
+
+    @Override
+    public int find(CharSequence text, int from, int limit) {
+        int m = pattern.length;
+        int last = m - 1;
+        char tail = pattern[last];
+        int maxStart = Math.min(limit - 1, text.length() - m);
+        int s = Math.max(from, 0);
+        while (s <= maxStart) {
+            char c = fold(text.charAt(s + last));
+            if (c == tail) {
+                int j = last - 1;
+                while (j >= 0 && fold(text.charAt(s + j)) == pattern[j]) j--;
+                if (j < 0 && (!wholeWord || isWordBoundary(text, s, s + m))) {
+                    return s;
+                }
+            }
+            s += shift[c & 0xFF];
+        }
+        return -1;
+    }
+
+    //大小写折叠：先转大写再转小写，覆盖大小写映射不对称的字符
+    private char fold(char c) {
+        return ignoreCase ? Character.toLowerCase(Character.toUpperCase(c)) : c;
+    }
+
+    //[start, end)两侧均不是单词字符
+    private static boolean isWordBoundary(CharSequence text, int start, int end) {
+        return (start == 0 || !isWordChar(text.charAt(start - 1)))
+                && (end == text.length() || !isWordChar(text.charAt(end)));
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -0,0 +1,89 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.geom.Rectangle2D;
+
+/*
+ 行号栏：作为滚动窗格的行头，只绘制视口中可见的行号。
+ - 可见行由模型的行索引换算（偏移→行号、行号→行首偏移），不生成全部行号文本
+ - 仅在总行数变化时处理：位数变化才重新布局，否则只重绘
+ - 自动换行导致文本区高度变化时同步高度并重绘
+ */
+public class LineNumberGutter extends JComponent {
+    private static final int PADDING = 8; // 左右内边距
+
+    private final JTextArea textArea; // 对应的文本区
+    private final TextModel textModel; // 行索引来源
+    private int lineCount = -1;       // 最近一次的总行数
+    private int digits = 1;           // 最大行号的位数
+
+    public LineNumberGutter(JTextArea textArea, TextModel model) {
+        this.textArea = textArea;
+        this.textModel = model;
+        setOpaque(true);
+        setFont(textArea.getFont());
+        setBackground(new Color(245, 245, 245));
+        setForeground(new Color(120, 120, 120));
+        // 文本区尺寸变化（换行、窗口缩放）时同步高度
+        textArea.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                revalidate();
+                repaint();
+            }
+        });
+        lineCountChanged();
+    }
+
+    //总行数可能变化时调用：未变化直接返回，位数变化才重新布局
+    public void lineCountChanged() {
+        int count = textModel.getTotalLines();
+        if (count == lineCount) return;
+        lineCount = count;
+        int newDigits = Integer.toString(count).length();
+        if (newDigits != digits) {
+            digits = newDigits;
+            revalidate();
+        }
+        repaint();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        FontMetrics fm = getFontMetrics(getFont());
+        int width = PADDING * 2 + fm.charWidth('0') * Math.max(digits, 2);
+        return new Dimension(width, textArea.getPreferredSize().height);
+    }
+
+    //只绘制裁剪区域内的行号
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        g.setColor(getForeground());
+        g.setFont(getFont());
+        FontMetrics fm = g.getFontMetrics();
+
+        int firstOffset = textArea.viewToModel2D(new Point(0, clip.y));
+        int lastOffset = textArea.viewToModel2D(new Point(0, clip.y + clip.height));
+        if (firstOffset < 0 || lastOffset < 0) return;
+        int firstLine = textModel.getLineOfOffset(firstOffset);
+        int lastLine = Math.min(textModel.getLineOfOffset(lastOffset), textModel.getTotalLines() - 1);
+
+        int right = getWidth() - PADDING;
+        for (int line = firstLine; line <= lastLine; line++) {
+            Rectangle2D r;
+            try {
+                r = textArea.modelToView2D(textModel.getLineStartOffset(line));
+            } catch (Exception ex) {
+                return; // 视图尚未布局完成
+            }
+            if (r == null) return;
+            String number = Integer.toString(line + 1);
+            int y = (int) r.getY() + fm.getAscent();
+            g.drawString(number, right - fm.stringWidth(number), y);
+        }
+    }
+}
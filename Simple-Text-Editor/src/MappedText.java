@@ -0,0 +1,346 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/*
+ 内存映射文本：把文件以只读方式映射到内存，作为片段表的原始缓冲区。
+ - 打开时只做一次顺序扫描：记录换行位置，并顺带统计单词数与非空白行数
+ - 字符按需从映射区解码，getLine只解码所请求的那一行
+ - 与逐行读取的结果一致：\r\n与单独的\r都视为一个换行，呈现为'\n'
+ - 纯ASCII且只用'\n'换行的文件字节偏移即字符偏移，直接按字节读取；
+   其他文件扫描时每BLOCK个字符记录一个字节偏移检查点，读取时从检查点解码所在的块
+ - 非ASCII字节按UTF-8解码，仅在文件字符集（默认为平台默认字符集）为UTF-8时可用；
+   字符集不是UTF-8或含非法UTF-8序列时 scan 返回null，调用方回退到逐行读取
+ 映射期间文件不应被外部截断或改写；detach把内容复制到堆内后不再访问映射区。
+ */
+public class MappedText implements CharSequence {
+    private static final int PROGRESS_STEP = 1 << 20; // 进度回调与取消检查的间隔（字节）
+    private static final int BLOCK_BITS = 12;
+    private static final int BLOCK = 1 << BLOCK_BITS;  // 检查点间隔（字符），即一次解码的块大小
+
+    private volatile MappedByteBuffer buffer; // 只读映射区，解除映射后为null
+    private volatile String detached;         // 解除映射后的堆内副本
+    private final int length;              // 有效字符数（不含末尾换行）
+    private final int[] lineFeeds;         // 换行位置表（字符下标，升序）
+    private final long wordCount;          // 扫描时统计的单词数
+    private final int nonBlankLines;       // 扫描时统计的非空白行数
+    private final int[] blockChars;        // 检查点的字符下标：k*BLOCK，代理对跨越时为k*BLOCK+1；字节与字符一一对应时为null
+    private final int[] blockBytes;        // 检查点对应的字节偏移
+    private volatile Block cache;          // 最近解码的块（不可变，多线程读取时各自持有引用）
+
+    //已解码的块：字符下标[start, start+chars.length)
+    private static final class Block {
+        final int start;
+        final char[] chars;
+
+        Block(int start, char[] chars) {
+            this.start = start;
+            this.chars = chars;
+        }
+    }
+
+    private MappedText(MappedByteBuffer buffer, int length, int[] lineFeeds, long wordCount, int nonBlankLines,
+                       int[] blockChars, int[] blockBytes) {
+        this.buffer = buffer;
+        this.length = length;
+        this.lineFeeds = lineFeeds;
+        this.wordCount = wordCount;
+        this.nonBlankLines = nonBlankLines;
+        this.blockChars = blockChars;
+        this.blockBytes = blockBytes;
+    }
+
+    /*
+     映射并扫描文件：一次顺序遍历建立换行位置表、解码检查点与统计信息。
+     不能按UTF-8解码（含非法序列，或默认字符集不是UTF-8而文件含非ASCII字节）时返回null；
+     超过2GB时抛出IOException。与逐行读取一致，文件末尾的换行不计入内容。
+     */
+    public static MappedText scan(FileChannel channel) throws IOException {
+        return scan(channel, null);
+    }
+
+    /*
+     带进度的扫描：每处理 PROGRESS_STEP 字节回调一次已扫描字节数，并响应线程中断（取消）。
+     */
+    public static MappedText scan(FileChannel channel, LongConsumer progress) throws IOException {
+        return scan(channel, progress, Charset.defaultCharset());
+    }
+
+    //按指定字符集扫描：只有UTF-8文件可以含非ASCII字节
+    public static MappedText scan(FileChannel channel, LongConsumer progress, Charset charset) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("file too large to map: " + size + " bytes");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        int n = (int) size;
+        Decoder decoder = new Decoder(buffer, 0, n, StandardCharsets.UTF_8.equals(charset));
+
+        int[] feeds = new int[1024];
+        int feedCount = 0;
+        int[] checkChars = new int[16];
+        int[] checkBytes = new int[16];
+        int checkCount = 0;
+        int nextCheck = 0;       // 下一个检查点的字符下标
+        int chars = 0;           // 已产生的字符数
+        boolean exact = true;    // 字节与字符一一对应（纯ASCII且无\r）
+        long words = 0;
+        int nonBlank = 0;
+        boolean inWord = false;
+        boolean lineHasText = false;
+        int nextReport = PROGRESS_STEP;
+        int i = 0;
+        while (i < n || !decoder.atCodePoint()) {
+            char c;
+            if (!decoder.atCodePoint()) {
+                c = (char) decoder.next(); // 增补字符的低代理
+            } else {
+                if (i >= nextReport) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("scan cancelled");
+                    }
+                    if (progress != null) progress.accept(i);
+                    nextReport += PROGRESS_STEP;
+                }
+                if (chars >= nextCheck) {
+                    if (checkCount == checkChars.length) {
+                        checkChars = Arrays.copyOf(checkChars, checkCount * 2);
+                        checkBytes = Arrays.copyOf(checkBytes, checkCount * 2);
+                    }
+                    checkChars[checkCount] = chars;
+                    checkBytes[checkCount++] = i;
+                    nextCheck = checkCount * BLOCK;
+                }
+                byte b = buffer.get(i);
+                if (b >= 0 && b != '\r') {
+                    c = (char) b; // ASCII：一个字节即一个字符
+                    i++;
+                } else {
+                    // \r或多字节序列：交给解码游标
+                    exact = false;
+                    decoder.pos = i;
+                    int d = decoder.next();
+                    if (d < 0) return null; // 无法解码：交给逐行读取
+                    c = (char) d;
+                    i = decoder.pos;
+                }
+            }
+            if (c == '\n') {
+                if (feedCount == feeds.length) {
+                    feeds = Arrays.copyOf(feeds, feedCount * 2);
+                }
+                feeds[feedCount++] = chars;
+                if (lineHasText) nonBlank++;
+                lineHasText = false;
+                inWord = false;
+            } else if (Character.isWhitespace(c)) {
+                inWord = false;
+            } else {
+                if (!inWord) words++;
+                inWord = true;
+                lineHasText = true;
+            }
+            chars++;
+        }
+        if (lineHasText) nonBlank++;
+        if (progress != null) progress.accept(n);
+
+        // 末尾换行不属于内容（与按行读取再以\n连接的结果一致）
+        if (feedCount > 0 && feeds[feedCount - 1] == chars - 1) {
+            chars--;
+            feedCount--;
+        }
+        return new MappedText(buffer, chars, Arrays.copyOf(feeds, feedCount), words, nonBlank,
+                exact ? null : Arrays.copyOf(checkChars, checkCount),
+                exact ? null : Arrays.copyOf(checkBytes, checkCount));
+    }
+
+    //换行位置表
+    public int[] getLineFeeds() {
+        return lineFeeds;
+    }
+
+    //扫描得到的单词数
+    public long getWordCount() {
+        return wordCount;
+    }
+
+    //扫描得到的非空白行数
+    public int getNonBlankLines() {
+        return nonBlankLines;
+    }
+
+    //内容与文件字节逐一对应（纯ASCII且只用'\n'换行），按原始字节处理的调用方只能使用这种映射
+    public boolean isExact() {
+        return blockChars == null;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    /*
+     解除映射：把全文复制到堆内，此后所有读取（包括共享本对象的片段表快照）都不再访问映射区，
+     映射区在不可达后由GC释放。Windows上文件被映射期间不能被替换，覆盖保存前需先解除。
+     正在进行的读取仍持有映射区的引用，可以安全完成。
+     */
+    public synchronized void detach() {
+        MappedByteBuffer b = buffer;
+        if (b == null) return;
+        detached = read(b, 0, length);
+        buffer = null; // 先发布副本再清除映射区：读到null的线程一定能读到副本
+        cache = null;
+    }
+
+    //已解除映射
+    public boolean isDetached() {
+        return buffer == null;
+    }
+
+    @Override
+    public char charAt(int index) {
+        MappedByteBuffer b = buffer;
+        if (b == null) {
+            return detached.charAt(index);
+        }
+        if (blockChars == null) {
+            return (char) (b.get(index) & 0xFF);
+        }
+        Block block = cache;
+        if (block == null || index < block.start || index >= block.start + block.chars.length) {
+            int k = blockOf(index);
+            int start = blockChars[k];
+            int end = k + 1 < blockChars.length ? Math.min(blockChars[k + 1], length) : length;
+            block = new Block(start, decode(b, k, start, end));
+            cache = block;
+        }
+        return block.chars[index - block.start];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        MappedByteBuffer b = buffer;
+        if (b == null) {
+            return detached.substring(start, end);
+        }
+        return read(b, start, end);
+    }
+
+    //从映射区读取字符下标[start, end)的文本
+    private String read(MappedByteBuffer b, int start, int end) {
+        if (blockChars == null) {
+            byte[] bytes = new byte[end - start];
+            b.get(start, bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+        if (start == end) return "";
+        return new String(decode(b, blockOf(start), start, end));
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+
+    //字符下标index所在的检查点序号（末尾的增补字符跨越块边界时，最后一块可能没有检查点）
+    private int blockOf(int index) {
+        int k = Math.min(index >>> BLOCK_BITS, blockChars.length - 1);
+        return blockChars[k] > index ? k - 1 : k;
+    }
+
+    //从第k个检查点开始解码，返回字符下标[start, end)的字符
+    private char[] decode(MappedByteBuffer b, int k, int start, int end) {
+        Decoder decoder = new Decoder(b, blockBytes[k], b.limit(), true);
+        for (int i = blockChars[k]; i < start; i++) {
+            decoder.next();
+        }
+        char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) decoder.next();
+        }
+        return chars;
+    }
+
+    /*
+     解码游标：从字节位置pos起逐个产生字符。\r\n与单独的\r产生一个'\n'；
+     多字节序列按UTF-8解码，增补字符依次产生高、低代理；无法解码时返回-1。
+     */
+    private static final class Decoder {
+        private final ByteBuffer buffer;
+        private final int limit;
+        private final boolean utf8; // false时非ASCII字节视为无法解码
+        int pos;
+        private char low;           // 待产生的低代理，0表示没有
+
+        Decoder(ByteBuffer buffer, int pos, int limit, boolean utf8) {
+            this.buffer = buffer;
+            this.pos = pos;
+            this.limit = limit;
+            this.utf8 = utf8;
+        }
+
+        boolean hasNext() {
+            return low != 0 || pos < limit;
+        }
+
+        //位于码点开头（不在代理对中间），可作为检查点
+        boolean atCodePoint() {
+            return low == 0;
+        }
+
+        int next() {
+            if (low != 0) {
+                char c = low;
+                low = 0;
+                return c;
+            }
+            int b = buffer.get(pos++) & 0xFF;
+            if (b < 0x80) {
+                if (b == '\r') {
+                    if (pos < limit && buffer.get(pos) == '\n') pos++;
+                    return '\n';
+                }
+                return b;
+            }
+            int need;
+            int cp;
+            if (!utf8) {
+                return -1;
+            } else if (b >= 0xC2 && b <= 0xDF) {
+                need = 1;
+                cp = b & 0x1F;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                need = 2;
+                cp = b & 0x0F;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                need = 3;
+                cp = b & 0x07;
+            } else {
+                return -1;
+            }
+            if (pos + need > limit) return -1;
+            for (int k = 0; k < need; k++) {
+                int c = buffer.get(pos++) & 0xFF;
+                if ((c & 0xC0) != 0x80) return -1;
+                cp = (cp << 6) | (c & 0x3F);
+            }
+            // 过长编码、代理区与超出Unicode范围的码点都是非法序列
+            if ((need == 2 && (cp < 0x800 || Character.isSurrogate((char) cp)))
+                    || (need == 3 && (cp < 0x10000 || cp > Character.MAX_CODE_POINT))) {
+                return -1;
+            }
+            if (cp >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                low = Character.lowSurrogate(cp);
+                return Character.highSurrogate(cp);
+            }
+            return cp;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.GapContent;
+import javax.swing.text.PlainDocument;
+import java.nio.CharBuffer;
+import java.util.Iterator;
+
+/*
+ 由模型内容直接建立的视图文档（打开大文件与整体刷新视图时使用）：
+ - 按块把模型文本复制进预先按总长分配的GapContent，不经过整篇String，可在后台线程进行
+ - 复制完成后只做一次插入更新建立行元素，而不是每块一次（每次都会复制整张行表）
+ - 建好后在事件线程上经JTextArea.setDocument安装，安装前不被其他线程访问
+ 视图仍持有内容的一份副本，与模型之间依旧按编辑区间增量同步。
+ */
+public class ModelDocument extends PlainDocument {
+    private static final int COPY_STEP = 1 << 16; // 每次复制的字符数，也是进度回调与取消检查的间隔
+
+    private ModelDocument(int capacity) {
+        super(new GapContent(capacity));
+    }
+
+    /*
+     由source（快照或尚未接管的新模型）建立文档；progress按字符回调，可为null。
+     线程被中断（取消）时返回null。
+     */
+    public static ModelDocument of(TextModel source, FileService.ProgressListener progress) {
+        int length = source.getCharCount();
+        ModelDocument doc = new ModelDocument(length + 1); // 末尾还有一个隐含的换行
+        Content content = doc.getContent();
+        int offset = 0;
+        try {
+            for (Iterator<CharBuffer> it = source.contentChunks(); it.hasNext(); ) {
+                CharBuffer chunk = it.next();
+                for (int i = 0; i < chunk.length(); i += COPY_STEP) {
+                    if (Thread.currentThread().isInterrupted()) return null;
+                    String piece = chunk.subSequence(i, Math.min(chunk.length(), i + COPY_STEP)).toString();
+                    content.insertString(offset, piece);
+                    offset += piece.length();
+                    if (progress != null) progress.onProgress(offset, length);
+                }
+            }
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e); // 始终追加在末尾，不会越界
+        }
+        doc.indexLines(offset);
+        return doc;
+    }
+
+    //对已写入内容的[0, length)执行一次插入更新：建立行元素与双向文本信息，不通知监听器
+    private void indexLines(int length) {
+        if (length == 0) return;
+        writeLock();
+        try {
+            DefaultDocumentEvent event = new DefaultDocumentEvent(0, length, DocumentEvent.EventType.INSERT);
+            insertUpdate(event, null);
+            event.end();
+        } finally {
+            writeUnlock();
+        }
+    }
+}
@@ -0,0 +1,550 @@
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ 片段表（Piece Table）：文本由“原始缓冲区 + 追加缓冲区”中的片段拼接而成。
+ - 原始缓冲区：打开文件时的全文（字符串或内存映射文件），只读，不按行拆分
+ - 追加缓冲区：所有新输入的文本依次追加，只增不改
+ - 片段树：以随机优先级平衡的树（Treap）按文档顺序组织片段，
+   每个节点缓存子树的字符数与换行数，插入/删除/按行定位均为 O(log n)
+ 节点不可变，编辑时沿路径复制，旧根仍可作为只读快照使用。
+*/
+
+public class PieceTable implements TextStorage {
+    // 追加缓冲区分页大小：分页存储避免扩容时整体复制
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int NODE_BYTES = 48; // 片段树节点的估算大小
+
+    private final CharSequence original;  // 原始缓冲区
+    private final int[] originalLineFeeds; // 原始缓冲区中每个'\n'的位置（升序）
+    private final AddBuffer added;         // 追加缓冲区
+    private Node root;                     // 片段树根节点
+    private final boolean readOnly;        // 只读快照不允许编辑
+    private long originalBytes = -1;       // 原始缓冲区的堆内存估算（首次查询时计算）
+
+    //构造函数：以给定文本作为原始缓冲区
+    public PieceTable(String content) {
+        this(content, scanLineFeeds(content));
+    }
+
+    //构造函数：原始缓冲区及其已知的换行位置表（如内存映射文件扫描所得）
+    public PieceTable(CharSequence content, int[] lineFeeds) {
+        this.original = content;
+        this.originalLineFeeds = lineFeeds;
+        this.added = new AddBuffer();
+        this.readOnly = false;
+        if (content.length() > 0) {
+            root = new Node(false, 0, content.length(), lineFeeds.length, null, null);
+        }
+    }
+
+    //快照构造：共享原始缓冲区、追加缓冲区已写入部分与片段树
+    private PieceTable(PieceTable source) {
+        this.original = source.original;
+        this.originalLineFeeds = source.originalLineFeeds;
+        this.added = source.added.frozen();
+        this.root = source.root;
+        this.readOnly = true;
+    }
+
+    //只读快照：O(1)，之后对本表的编辑不影响快照，可在其他线程读取
+    @Override
+    public TextStorage snapshot() {
+        return new PieceTable(this);
+    }
+
+    /*
+     恢复为本表此前的快照：追加缓冲区只增不改，快照片段引用的区域仍然有效，
+     换回片段树根节点即可，之后的新输入继续追加到缓冲区末尾
+     */
+    @Override
+    public void restore(TextStorage snapshot) {
+        checkWritable();
+        PieceTable source = (PieceTable) snapshot;
+        if (source.original != original) {
+            throw new IllegalArgumentException("snapshot of a different table");
+        }
+        root = source.root;
+    }
+
+    //文档总字符数
+    @Override
+    public int length() {
+        return root == null ? 0 : root.totalLength;
+    }
+
+    //总行数：换行数 + 1
+    @Override
+    public int getLineCount() {
+        return (root == null ? 0 : root.totalLineFeeds) + 1;
+    }
+
+    //行首偏移：第line行（0起始）首字符在文档中的位置
+    @Override
+    public int getLineStart(int line) {
+        if (line <= 0) return 0;
+        // 找到第line个换行符，行首为其后一位
+        int k = line;
+        int base = 0;
+        Node node = root;
+        while (node != null) {
+            int leftFeeds = lineFeeds(node.left);
+            if (k <= leftFeeds) {
+                node = node.left;
+                continue;
+            }
+            k -= leftFeeds;
+            base += length(node.left);
+            if (k <= node.lineFeeds) {
+                int[] feeds = node.inAdd ? added.lineFeeds : originalLineFeeds;
+                int size = node.inAdd ? added.lineFeedCount : feeds.length;
+                int first = lowerBound(feeds, size, node.start);
+                return base + feeds[first + k - 1] - node.start + 1;
+            }
+            k -= node.lineFeeds;
+            base += node.length;
+            node = node.right;
+        }
+        return length();
+    }
+
+    //偏移所在行：统计offset之前的换行数
+    @Override
+    public int getLineOfOffset(int offset) {
+        int line = 0;
+        Node node = root;
+        while (node != null) {
+            int leftLength = length(node.left);
+            if (offset < leftLength) {
+                node = node.left;
+                continue;
+            }
+            line += lineFeeds(node.left);
+            offset -= leftLength;
+            if (offset < node.length) {
+                return line + countLineFeeds(node.inAdd, node.start, node.start + offset);
+            }
+            line += node.lineFeeds;
+            offset -= node.length;
+            node = node.right;
+        }
+        return line;
+    }
+
+    //读取[offset, offset+length)范围的文本
+    @Override
+    public String getText(int offset, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        collect(root, offset, offset + length, 0, sb);
+        return sb.toString();
+    }
+
+    //全文写入sb
+    @Override
+    public void appendTo(StringBuilder sb) {
+        collect(root, 0, length(), 0, sb);
+    }
+
+    @Override
+    public void appendTo(StringBuilder sb, int offset, int length) {
+        collect(root, offset, offset + length, 0, sb);
+    }
+
+    //按文档顺序逐块遍历：原始片段整段输出，追加片段按页输出，均不复制文本
+    @Override
+    public Iterator<CharBuffer> chunks() {
+        return new Iterator<>() {
+            private final ArrayDeque<Node> stack = new ArrayDeque<>(); // 中序遍历栈
+            private Node piece; // 当前片段
+            private int pos;    // 当前片段中下一个待输出的缓冲区位置
+
+            {
+                pushLeft(root);
+            }
+
+            private void pushLeft(Node n) {
+                while (n != null) {
+                    stack.push(n);
+                    n = n.left;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return (piece != null && pos < piece.start + piece.length) || !stack.isEmpty();
+            }
+
+            @Override
+            public CharBuffer next() {
+                if (piece == null || pos >= piece.start + piece.length) {
+                    if (stack.isEmpty()) throw new NoSuchElementException();
+                    piece = stack.pop();
+                    pushLeft(piece.right);
+                    pos = piece.start;
+                }
+                int end = piece.start + piece.length;
+                if (!piece.inAdd) {
+                    pos = end;
+                    return CharBuffer.wrap(original, piece.start, end);
+                }
+                CharBuffer chunk = added.chunk(pos, end);
+                pos += chunk.remaining();
+                return chunk;
+            }
+        };
+    }
+
+    //在offset处插入文本：文本追加到追加缓冲区，再把新片段接入树中
+    @Override
+    public void insert(int offset, String text) {
+        checkWritable();
+        if (text.isEmpty()) return;
+        int start = added.length;
+        added.append(text);
+        int feeds = added.countLineFeeds(start, start + text.length());
+
+        Node[] parts = split(root, offset);
+        Node left = parts[0];
+        // 连续输入：前一片段恰好以追加缓冲区末尾结束，则直接延长，避免片段数随按键增长
+        Node last = rightmost(left);
+        if (last != null && last.inAdd && last.start + last.length == start) {
+            left = extendRightmost(left, text.length(), feeds);
+        } else {
+            left = merge(left, new Node(true, start, text.length(), feeds, null, null));
+        }
+        root = merge(left, parts[1]);
+    }
+
+    //删除[offset, offset+length)范围的文本
+    @Override
+    public void delete(int offset, int length) {
+        checkWritable();
+        if (length <= 0) return;
+        Node[] head = split(root, offset);
+        Node[] tail = split(head[1], length);
+        root = merge(head[0], tail[1]);
+    }
+
+    //移动：拆出区间与区间和目标之间的部分，交换两者顺序后重新合并
+    @Override
+    public void move(int offset, int length, int target) {
+        checkWritable();
+        if (length <= 0 || (target >= offset && target <= offset + length)) return;
+        int lo = Math.min(offset, target);
+        int mid = target < offset ? offset : offset + length;
+        int hi = target < offset ? offset + length : target;
+        Node[] a = split(root, lo);
+        Node[] b = split(a[1], mid - lo);
+        Node[] c = split(b[1], hi - mid);
+        root = merge(merge(a[0], c[0]), merge(b[0], c[1]));
+    }
+
+    //堆内存估算：原始缓冲区 + 追加缓冲区 + 片段树节点
+    @Override
+    public long estimateMemoryBytes() {
+        if (originalBytes < 0) {
+            originalBytes = 16 + 4L * originalLineFeeds.length;
+            if (original instanceof String) {
+                // 紧凑字符串：全部字符不超过0xFF时每字符1字节
+                String s = (String) original;
+                boolean latin1 = true;
+                for (int i = 0; i < s.length() && latin1; i++) {
+                    latin1 = s.charAt(i) <= 0xFF;
+                }
+                originalBytes += 40 + (latin1 ? 1L : 2L) * s.length();
+            }
+        }
+        return originalBytes + added.estimateMemoryBytes() + NODE_BYTES * countNodes(root);
+    }
+
+    private static long countNodes(Node n) {
+        return n == null ? 0 : 1 + countNodes(n.left) + countNodes(n.right);
+    }
+
+    private void checkWritable() {
+        if (readOnly) throw new UnsupportedOperationException("read-only snapshot");
+    }
+
+    // ---------------- 片段树内部实现 ----------------
+
+    private static final class Node {
+        final boolean inAdd;   // 片段所属缓冲区：true为追加缓冲区
+        final int start;       // 片段在缓冲区中的起始位置
+        final int length;      // 片段长度
+        final int lineFeeds;   // 片段内换行数
+        final int priority;    // Treap优先级
+        final Node left, right;
+        final int totalLength;    // 子树字符数
+        final int totalLineFeeds; // 子树换行数
+
+        Node(boolean inAdd, int start, int length, int lineFeeds, Node left, Node right) {
+            this(inAdd, start, length, lineFeeds, ThreadLocalRandom.current().nextInt(), left, right);
+        }
+
+        Node(boolean inAdd, int start, int length, int lineFeeds, int priority, Node left, Node right) {
+            this.inAdd = inAdd;
+            this.start = start;
+            this.length = length;
+            this.lineFeeds = lineFeeds;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.totalLength = PieceTable.length(left) + length + PieceTable.length(right);
+            this.totalLineFeeds = PieceTable.lineFeeds(left) + lineFeeds + PieceTable.lineFeeds(right);
+        }
+
+        //替换子节点（路径复制）
+        Node with(Node left, Node right) {
+            return new Node(inAdd, start, length, lineFeeds, priority, left, right);
+        }
+    }
+
+    private static int length(Node n) {
+        return n == null ? 0 : n.totalLength;
+    }
+
+    private static int lineFeeds(Node n) {
+        return n == null ? 0 : n.totalLineFeeds;
+    }
+
+    //合并：a中所有片段位于b之前
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            return a.with(a.left, merge(a.right, b));
+        }
+        return b.with(merge(a, b.left), b.right);
+    }
+
+    //拆分：返回[前offset个字符, 其余部分]，必要时把片段一分为二
+    private Node[] split(Node n, int offset) {
+        if (n == null) return new Node[]{null, null};
+        int leftLength = length(n.left);
+        if (offset <= leftLength) {
+            Node[] parts = split(n.left, offset);
+            return new Node[]{parts[0], n.with(parts[1], n.right)};
+        }
+        int inPiece = offset - leftLength;
+        if (inPiece >= n.length) {
+            Node[] parts = split(n.right, inPiece - n.length);
+            return new Node[]{n.with(n.left, parts[0]), parts[1]};
+        }
+        // 在片段内部拆分
+        int headFeeds = countLineFeeds(n.inAdd, n.start, n.start + inPiece);
+        Node head = new Node(n.inAdd, n.start, inPiece, headFeeds, n.priority, n.left, null);
+        Node tail = new Node(n.inAdd, n.start + inPiece, n.length - inPiece, n.lineFeeds - headFeeds, null, null);
+        return new Node[]{head, merge(tail, n.right)};
+    }
+
+    private static Node rightmost(Node n) {
+        if (n == null) return null;
+        while (n.right != null) n = n.right;
+        return n;
+    }
+
+    //延长最右片段（路径复制右链）
+    private static Node extendRightmost(Node n, int extraLength, int extraFeeds) {
+        if (n.right == null) {
+            return new Node(n.inAdd, n.start, n.length + extraLength, n.lineFeeds + extraFeeds, n.priority, n.left, null);
+        }
+        return n.with(n.left, extendRightmost(n.right, extraLength, extraFeeds));
+    }
+
+    //按文档顺序收集[from, to)范围内的文本；base为子树在文档中的起始偏移
+    private void collect(Node n, int from, int to, int base, StringBuilder sb) {
+        if (n == null || from >= to) return;
+        int leftLength = length(n.left);
+        if (from < base + leftLength) {
+            collect(n.left, from, to, base, sb);
+        }
+        int pieceStart = base + leftLength;
+        int pieceEnd = pieceStart + n.length;
+        if (from < pieceEnd && to > pieceStart) {
+            int s = Math.max(from, pieceStart) - pieceStart + n.start;
+            int e = Math.min(to, pieceEnd) - pieceStart + n.start;
+            if (n.inAdd) {
+                added.appendTo(sb, s, e);
+            } else {
+                sb.append(original, s, e);
+            }
+        }
+        if (to > pieceEnd) {
+            collect(n.right, from, to, pieceEnd, sb);
+        }
+    }
+
+    //统计缓冲区[from, to)内的换行数
+    private int countLineFeeds(boolean inAdd, int from, int to) {
+        if (inAdd) return added.countLineFeeds(from, to);
+        return lowerBound(originalLineFeeds, originalLineFeeds.length, to)
+                - lowerBound(originalLineFeeds, originalLineFeeds.length, from);
+    }
+
+    //有序数组中首个 >= key 的下标
+    private static int lowerBound(int[] a, int size, int key) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    //一次顺序扫描记录全部换行位置
+    private static int[] scanLineFeeds(String s) {
+        int count = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '\n') count++;
+        }
+        int[] feeds = new int[count];
+        int k = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '\n') feeds[k++] = i;
+        }
+        return feeds;
+    }
+
+    /*
+     追加缓冲区：分页存储 + 换行位置表，只追加不修改。
+     - 每页默认为Latin-1字节页（每字符1字节）；页内首次写入超出0xFF的字符时，
+       该页整体转为UTF-16字符页，其余页不受影响
+     - 读取时按页解码，不保留解码结果
+     已写入的区域不会再变化，因此旧快照可以安全读取；转换页时复制页表，
+     快照仍引用原页表中的字节页。
+     */
+    private static final class AddBuffer {
+        volatile byte[][] latin = new byte[1][];  // Latin-1字节页
+        volatile char[][] wide = new char[1][];   // UTF-16字符页：非null时优先于字节页
+        volatile int[] lineFeeds = new int[64];
+        int lineFeedCount;
+        int length;
+
+        //冻结视图：共享页与换行表，只记录当前已写入的长度，供快照读取
+        AddBuffer frozen() {
+            AddBuffer view = new AddBuffer(latin, wide, lineFeeds);
+            view.lineFeedCount = lineFeedCount;
+            view.length = length;
+            return view;
+        }
+
+        AddBuffer() {
+        }
+
+        private AddBuffer(byte[][] latin, char[][] wide, int[] lineFeeds) {
+            this.latin = latin;
+            this.wide = wide;
+            this.lineFeeds = lineFeeds;
+        }
+
+        void append(String text) {
+            int base = length;
+            int i = 0;
+            while (i < text.length()) {
+                int page = length >>> PAGE_BITS;
+                if (page == latin.length) {
+                    latin = Arrays.copyOf(latin, page * 2);
+                    wide = Arrays.copyOf(wide, page * 2);
+                }
+                int inPage = length & (PAGE_SIZE - 1);
+                int n = Math.min(text.length() - i, PAGE_SIZE - inPage);
+                if (wide[page] == null && !isLatin1(text, i, i + n)) {
+                    inflate(page, inPage);
+                }
+                if (wide[page] != null) {
+                    text.getChars(i, i + n, wide[page], inPage);
+                } else {
+                    if (latin[page] == null) {
+                        latin[page] = new byte[PAGE_SIZE];
+                    }
+                    byte[] bytes = latin[page];
+                    for (int k = 0; k < n; k++) {
+                        bytes[inPage + k] = (byte) text.charAt(i + k);
+                    }
+                }
+                i += n;
+                length += n;
+            }
+            for (int j = 0; j < text.length(); j++) {
+                if (text.charAt(j) != '\n') continue;
+                if (lineFeedCount == lineFeeds.length) {
+                    lineFeeds = Arrays.copyOf(lineFeeds, lineFeedCount * 2);
+                }
+                lineFeeds[lineFeedCount++] = base + j;
+            }
+        }
+
+        //把字节页转为字符页（保留已写入的used个字符）；页表先复制，已有快照继续读原字节页
+        private void inflate(int page, int used) {
+            char[] chars = new char[PAGE_SIZE];
+            byte[] bytes = latin[page];
+            for (int k = 0; k < used; k++) {
+                chars[k] = (char) (bytes[k] & 0xFF);
+            }
+            byte[][] newLatin = latin.clone();
+            newLatin[page] = null;
+            char[][] newWide = wide.clone();
+            newWide[page] = chars;
+            wide = newWide;
+            latin = newLatin;
+        }
+
+        private static boolean isLatin1(String text, int from, int to) {
+            for (int k = from; k < to; k++) {
+                if (text.charAt(k) > 0xFF) return false;
+            }
+            return true;
+        }
+
+        int countLineFeeds(int from, int to) {
+            return lowerBound(lineFeeds, lineFeedCount, to) - lowerBound(lineFeeds, lineFeedCount, from);
+        }
+
+        //[from, to)中位于同一页的开头部分，包装为只读CharBuffer（字节页按需解码）
+        CharBuffer chunk(int from, int to) {
+            int page = from >>> PAGE_BITS;
+            int inPage = from & (PAGE_SIZE - 1);
+            int n = Math.min(to - from, PAGE_SIZE - inPage);
+            char[] chars = wide[page];
+            if (chars != null) {
+                return CharBuffer.wrap(chars, inPage, n).asReadOnlyBuffer();
+            }
+            return CharBuffer.wrap(new String(latin[page], inPage, n, StandardCharsets.ISO_8859_1));
+        }
+
+        void appendTo(StringBuilder sb, int from, int to) {
+            while (from < to) {
+                int page = from >>> PAGE_BITS;
+                int inPage = from & (PAGE_SIZE - 1);
+                int n = Math.min(to - from, PAGE_SIZE - inPage);
+                char[] chars = wide[page];
+                if (chars != null) {
+                    sb.append(chars, inPage, n);
+                } else {
+                    sb.append(new String(latin[page], inPage, n, StandardCharsets.ISO_8859_1));
+                }
+                from += n;
+            }
+        }
+
+        //堆内存估算：已分配的页与换行表
+        long estimateMemoryBytes() {
+            long bytes = 16L * (latin.length + wide.length) + 4L * lineFeeds.length;
+            for (int page = 0; page < latin.length; page++) {
+                if (wide[page] != null) {
+                    bytes += 2L * PAGE_SIZE + 16;
+                } else if (latin[page] != null) {
+                    bytes += PAGE_SIZE + 16;
+                }
+            }
+            return bytes;
+        }
+    }
+}
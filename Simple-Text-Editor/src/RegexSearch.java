@@ -0,0 +1,100 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/*
+ 正则查找：编译后的 Pattern 按“表达式 + 标志”做 LRU 缓存，重复查询无需重新编译。
+ 每个线程复用同一个 Matcher，逐行调用 reset(line)，不为每行分配新的匹配器。
+ Pattern 不可变、可共享；Matcher 仅在所属线程内使用。
+ */
+public final class RegexSearch {
+    private static final int CACHE_SIZE = 16; // 缓存的表达式数
+
+    // 编译缓存：键为标志 + 表达式
+    private static final Map<String, RegexSearch> CACHE = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RegexSearch> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final Pattern pattern;
+    private final ThreadLocal<Matcher> matcher; // 每个线程一个可复用的匹配器
+
+    private RegexSearch(Pattern pattern) {
+        this.pattern = pattern;
+        this.matcher = ThreadLocal.withInitial(() -> pattern.matcher(""));
+    }
+
+    /*
+     获取表达式对应的查找器（优先从缓存取）。
+     表达式为空时抛出IllegalArgumentException，语法错误时抛出PatternSyntaxException。
+     */
+    public static RegexSearch of(String regex, boolean ignoreCase) {
+        return of(regex, ignoreCase, false);
+    }
+
+    //multiline为true时在全文上匹配：^、$对应每行的行首行尾
+    public static RegexSearch of(String regex, boolean ignoreCase, boolean multiline) {
+        if (regex == null || regex.isEmpty()) {
+            throw new IllegalArgumentException("Regular expression must not be empty");
+        }
+        int flags = ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+        if (multiline) flags |= Pattern.MULTILINE;
+        String key = flags + ":" + regex;
+        synchronized (CACHE) {
+            RegexSearch cached = CACHE.get(key);
+            if (cached == null) {
+                cached = new RegexSearch(Pattern.compile(regex, flags)); // 编译失败时不写入缓存
+                CACHE.put(key, cached);
+            }
+            return cached;
+        }
+    }
+
+    /*
+     wholeWord为true时只接受两侧不是单词字符（字母、数字或'_'，与文本查找一致）的匹配：
+     表达式先单独编译校验，再包进非捕获组并加上前后环视，捕获组编号不变。
+     */
+    public static RegexSearch of(String regex, boolean ignoreCase, boolean multiline, boolean wholeWord) {
+        RegexSearch search = of(regex, ignoreCase, multiline);
+        if (!wholeWord) return search;
+        String wrapped = "(?<![\\p{L}\\p{Nd}_])(?:" + regex + (endsInQuote(regex) ? "\\E" : "")
+                + ")(?![\\p{L}\\p{Nd}_])";
+        try {
+            return of(wrapped, ignoreCase, multiline);
+        } catch (PatternSyntaxException e) {
+            // 如(?x)模式下以注释结尾的表达式，注释会吞掉包裹的右括号
+            throw new IllegalArgumentException("Whole word cannot be applied to this expression: " + e.getDescription());
+        }
+    }
+
+    //表达式是否停在未闭合的\Q引用中（包裹时需先补上\E，否则右括号与环视都会被当作字面文本）
+    private static boolean endsInQuote(String regex) {
+        boolean quoted = false;
+        for (int i = 0; i < regex.length(); i++) {
+            if (quoted) {
+                if (regex.startsWith("\\E", i)) {
+                    quoted = false;
+                    i++;
+                }
+            } else if (regex.charAt(i) == '\\') {
+                quoted = regex.startsWith("Q", i + 1);
+                i++; // 跳过被转义的字符
+            }
+        }
+        return quoted;
+    }
+
+    //当前线程的匹配器，已重置到input
+    public Matcher matcher(CharSequence input) {
+        return matcher.get().reset(input);
+    }
+
+    //新的独立匹配器：供跨多次调用保持状态的迭代器使用
+    public Matcher newMatcher() {
+        return pattern.matcher("");
+    }
+}
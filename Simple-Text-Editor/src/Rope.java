@@ -0,0 +1,306 @@
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ 绳索树（Rope）：以高度平衡（AVL）的二叉树组织文本块。
+ - 叶子节点保存不超过 LEAF_MAX 个字符的文本块
+ - 每个节点缓存子树字符数与换行数，按偏移/按行定位与拆分拼接均为 O(log n)
+ - 节点不可变，编辑时只重建受影响的路径
+*/
+
+public class Rope implements TextStorage {
+    private static final int LEAF_MAX = 2048; // 叶子文本块上限，相邻小块拼接时合并
+    private static final int NODE_BYTES = 40; // 树节点的估算大小
+
+    private Node root; // 根节点，空文档为null
+
+    //构造函数：把文本切分为文本块并自底向上构建平衡树
+    public Rope(String content) {
+        root = build(content, 0, content.length());
+    }
+
+    private Rope(Node root) {
+        this.root = root;
+    }
+
+    //快照：节点不可变，直接共享根节点即可，O(1)
+    @Override
+    public TextStorage snapshot() {
+        return new Rope(root);
+    }
+
+    //恢复：节点不可变，换回快照的根节点即可
+    @Override
+    public void restore(TextStorage snapshot) {
+        root = ((Rope) snapshot).root;
+    }
+
+    @Override
+    public int length() {
+        return length(root);
+    }
+
+    @Override
+    public int getLineCount() {
+        return lineFeeds(root) + 1;
+    }
+
+    @Override
+    public int getLineStart(int line) {
+        if (line <= 0) return 0;
+        if (line > lineFeeds(root)) return length();
+        // 找到第line个换行符，行首为其后一位
+        int k = line;
+        int base = 0;
+        Node node = root;
+        while (!node.isLeaf()) {
+            int leftFeeds = node.left.lineFeeds;
+            if (k <= leftFeeds) {
+                node = node.left;
+            } else {
+                k -= leftFeeds;
+                base += node.left.length;
+                node = node.right;
+            }
+        }
+        String text = node.text;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n' && --k == 0) {
+                return base + i + 1;
+            }
+        }
+        return length();
+    }
+
+    @Override
+    public int getLineOfOffset(int offset) {
+        if (root == null) return 0;
+        int line = 0;
+        Node node = root;
+        while (!node.isLeaf()) {
+            if (offset < node.left.length) {
+                node = node.left;
+            } else {
+                line += node.left.lineFeeds;
+                offset -= node.left.length;
+                node = node.right;
+            }
+        }
+        String text = node.text;
+        int end = Math.min(offset, text.length());
+        for (int i = 0; i < end; i++) {
+            if (text.charAt(i) == '\n') line++;
+        }
+        return line;
+    }
+
+    @Override
+    public String getText(int offset, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        collect(root, offset, offset + length, 0, sb);
+        return sb.toString();
+    }
+
+    @Override
+    public void appendTo(StringBuilder sb) {
+        collect(root, 0, length(), 0, sb);
+    }
+
+    @Override
+    public void appendTo(StringBuilder sb, int offset, int length) {
+        collect(root, offset, offset + length, 0, sb);
+    }
+
+    //按文档顺序逐个输出叶子文本块
+    @Override
+    public Iterator<CharBuffer> chunks() {
+        return new Iterator<>() {
+            private final ArrayDeque<Node> stack = new ArrayDeque<>(); // 待访问的子树
+
+            {
+                if (root != null) stack.push(root);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public CharBuffer next() {
+                if (stack.isEmpty()) throw new NoSuchElementException();
+                Node n = stack.pop();
+                while (!n.isLeaf()) {
+                    stack.push(n.right);
+                    n = n.left;
+                }
+                return CharBuffer.wrap(n.text);
+            }
+        };
+    }
+
+    @Override
+    public void insert(int offset, String text) {
+        if (text.isEmpty()) return;
+        Node[] parts = split(root, offset);
+        root = join(join(parts[0], build(text, 0, text.length())), parts[1]);
+    }
+
+    @Override
+    public void delete(int offset, int length) {
+        if (length <= 0) return;
+        Node[] head = split(root, offset);
+        Node[] tail = split(head[1], length);
+        root = join(head[0], tail[1]);
+    }
+
+    //移动：拆出区间与区间和目标之间的部分，交换两者顺序后重新拼接
+    @Override
+    public void move(int offset, int length, int target) {
+        if (length <= 0 || (target >= offset && target <= offset + length)) return;
+        int lo = Math.min(offset, target);
+        int mid = target < offset ? offset : offset + length;
+        int hi = target < offset ? offset + length : target;
+        Node[] a = split(root, lo);
+        Node[] b = split(a[1], mid - lo);
+        Node[] c = split(b[1], hi - mid);
+        root = join(join(a[0], c[0]), join(b[0], c[1]));
+    }
+
+    //堆内存估算：树节点 + 叶子字符串（紧凑字符串：全部字符不超过0xFF时每字符1字节）
+    @Override
+    public long estimateMemoryBytes() {
+        return estimate(root);
+    }
+
+    private static long estimate(Node n) {
+        if (n == null) return 0;
+        if (!n.isLeaf()) return NODE_BYTES + estimate(n.left) + estimate(n.right);
+        boolean latin1 = true;
+        for (int i = 0; i < n.text.length() && latin1; i++) {
+            latin1 = n.text.charAt(i) <= 0xFF;
+        }
+        return NODE_BYTES + 40 + (latin1 ? 1L : 2L) * n.length;
+    }
+
+    // ---------------- 树结构内部实现 ----------------
+
+    private static final class Node {
+        final String text;      // 叶子文本；内部节点为null
+        final Node left, right; // 内部节点的左右子树
+        final int length;       // 子树字符数
+        final int lineFeeds;    // 子树换行数
+        final int height;       // 子树高度（叶子为0）
+
+        //叶子节点
+        Node(String text) {
+            this.text = text;
+            this.left = null;
+            this.right = null;
+            this.length = text.length();
+            int feeds = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '\n') feeds++;
+            }
+            this.lineFeeds = feeds;
+            this.height = 0;
+        }
+
+        //内部节点：左右子树拼接
+        Node(Node left, Node right) {
+            this.text = null;
+            this.left = left;
+            this.right = right;
+            this.length = left.length + right.length;
+            this.lineFeeds = left.lineFeeds + right.lineFeeds;
+            this.height = Math.max(left.height, right.height) + 1;
+        }
+
+        boolean isLeaf() {
+            return text != null;
+        }
+    }
+
+    private static int length(Node n) {
+        return n == null ? 0 : n.length;
+    }
+
+    private static int lineFeeds(Node n) {
+        return n == null ? 0 : n.lineFeeds;
+    }
+
+    //把s[from, to)构建为平衡子树，每个叶子不超过LEAF_MAX
+    private static Node build(String s, int from, int to) {
+        if (from >= to) return null;
+        if (to - from <= LEAF_MAX) {
+            return new Node(s.substring(from, to));
+        }
+        int mid = (from + to) >>> 1;
+        return new Node(build(s, from, mid), build(s, mid, to));
+    }
+
+    //拼接：a在前、b在后；高度差较大时沿较高一侧下降后再平衡
+    private static Node join(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.isLeaf() && b.isLeaf() && a.length + b.length <= LEAF_MAX) {
+            return new Node(a.text + b.text); // 相邻小块合并，避免逐字输入产生碎片
+        }
+        if (a.height > b.height + 1) {
+            return balance(a.left, join(a.right, b));
+        }
+        if (b.height > a.height + 1) {
+            return balance(join(a, b.left), b.right);
+        }
+        return new Node(a, b);
+    }
+
+    //以l、r为子树建立节点，高度差为2时做单/双旋转
+    private static Node balance(Node l, Node r) {
+        if (l.height > r.height + 1) {
+            if (l.left.height >= l.right.height) {
+                return new Node(l.left, new Node(l.right, r));
+            }
+            return new Node(new Node(l.left, l.right.left), new Node(l.right.right, r));
+        }
+        if (r.height > l.height + 1) {
+            if (r.right.height >= r.left.height) {
+                return new Node(new Node(l, r.left), r.right);
+            }
+            return new Node(new Node(l, r.left.left), new Node(r.left.right, r.right));
+        }
+        return new Node(l, r);
+    }
+
+    //拆分：返回[前offset个字符, 其余部分]
+    private static Node[] split(Node n, int offset) {
+        if (n == null) return new Node[]{null, null};
+        if (offset <= 0) return new Node[]{null, n};
+        if (offset >= n.length) return new Node[]{n, null};
+        if (n.isLeaf()) {
+            return new Node[]{new Node(n.text.substring(0, offset)), new Node(n.text.substring(offset))};
+        }
+        if (offset < n.left.length) {
+            Node[] parts = split(n.left, offset);
+            return new Node[]{parts[0], join(parts[1], n.right)};
+        }
+        if (offset == n.left.length) {
+            return new Node[]{n.left, n.right};
+        }
+        Node[] parts = split(n.right, offset - n.left.length);
+        return new Node[]{join(n.left, parts[0]), parts[1]};
+    }
+
+    //按文档顺序收集[from, to)范围内的文本；base为子树在文档中的起始偏移
+    private static void collect(Node n, int from, int to, int base, StringBuilder sb) {
+        if (n == null || from >= to || to <= base || from >= base + n.length) return;
+        if (n.isLeaf()) {
+            sb.append(n.text, Math.max(from - base, 0), Math.min(to - base, n.length));
+            return;
+        }
+        collect(n.left, from, to, base, sb);
+        collect(n.right, from, to, base + n.left.length, sb);
+    }
+}
@@ -0,0 +1,14 @@
+/*
+ 查找引擎接口：在字符序列中定位模式串，供 FindReplaceService 分块扫描文档时调用。
+ 实现类应为不可变对象，可在多个线程间共享。
+ */
+public interface SearchEngine {
+    //模式串长度（匹配长度）
+    int patternLength();
+
+    /*
+     在text中查找起始下标位于[from, limit)的首个匹配，返回起始下标，无匹配返回-1。
+     匹配必须完整落在text内；text[from-1]与匹配末尾之后的字符（若存在）视为相邻上下文。
+     */
+    int find(CharSequence text, int from, int limit);
+}
@@ -0,0 +1,30 @@
+/*
+ 文本变更描述：一次编辑操作把旧文本中[offset, offset+length)替换为text。
+ 服务层返回该描述，视图据此只更新受影响的区间而不是整体重设文本。
+ */
+public class TextChange {
+    private final int offset;   // 起始偏移（旧文本与新文本中相同）
+    private final int length;   // 被替换的旧文本长度
+    private final String text;  // 替换后的新文本
+
+    public TextChange(int offset, int length, String text) {
+        this.offset = offset;
+        this.length = length;
+        this.text = text;
+    }
+
+    //起始偏移
+    public int getOffset() {
+        return offset;
+    }
+
+    //被替换的旧文本长度
+    public int getLength() {
+        return length;
+    }
+
+    //新文本
+    public String getText() {
+        return text;
+    }
+}
@@ -2,13 +2,17 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.event.DocumentListener;
 import javax.swing.event.DocumentEvent;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.InputEvent;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Future;
 
 /*
  简易文本编辑器主窗口：负责菜单、文本区、状态栏与服务层的集成。
@@ -19,13 +23,19 @@ import java.util.Locale;
  - FileService 负责将模型与磁盘文件读写
  */
 public class TextEditor extends JFrame implements ActionListener {
+    private static final int UNDO_LIMIT = 1000;                 // 最多可撤销的步数
+    private static final long UNDO_MEMORY_LIMIT = 64L << 20;    // 撤销历史的估算内存上限
+
     private JTextArea textArea;      // 主文本区域
     private JMenuBar menuBar;        // 菜单栏
     private JLabel statusLabel;      // 状态栏：显示行数、光标位置、选区长度等
     private TextModel textModel;     // 文本数据模型
     private FileService fileService; // 文件读写服务
     private JToolBar toolBar;        // 顶部工具栏
-    private JTextArea lineNumberArea; // 行号视图
+    private LineNumberGutter lineNumberGutter; // 行号视图
+    private FindBar findBar;                   // 增量查找栏
+    private final List<AbstractButton> lockedActions = new ArrayList<>(); // 加载期间禁用的菜单项与工具栏按钮
+    private DocumentListener documentSync;     // 视图→模型同步监听，更换文档时随之迁移
 
     // 算法服务：在模型上执行具体操作
     private FindReplaceService findReplaceService;
@@ -35,6 +45,9 @@ public class TextEditor extends JFrame implements ActionListener {
     private boolean isModified = false;        // 是否有未保存修改
     private boolean isProgrammaticChange = false; // 程序性修改标记，用于避免监听递归触发
     private String currentFileName = "new.txt"; // 当前文件名
+    private Timer statusTimer;                  // 状态栏合并刷新定时器（每帧最多一次）
+    private long editCount = 0;                 // 编辑计数：后台保存期间有新编辑时保留修改标记
+    private int editCaret = -1;                 // 最近一次用户编辑后光标应在的位置，-1表示无
 
     /*
      构造函数：初始化模型、服务与界面组件，并建立文档监听
@@ -60,6 +73,7 @@ public class TextEditor extends JFrame implements ActionListener {
         UIManager.put("FileChooser.cancelButtonText", "Cancel");
         // 初始化数据模型和服务
         textModel = new TextModel();
+        textModel.enableUndo(UNDO_LIMIT, UNDO_MEMORY_LIMIT);
         fileService = new FileService(textModel);
         // 新增服务实例化
         findReplaceService = new FindReplaceService(textModel);
@@ -67,6 +81,10 @@ public class TextEditor extends JFrame implements ActionListener {
         blockMoveService = new BlockMoveService(textModel);
         deleteService = new DeleteService(textModel);
 
+        // 状态栏刷新合并：同一帧内的多次请求只执行一次
+        statusTimer = new Timer(16, e -> refreshStatusBar());
+        statusTimer.setRepeats(false);
+
         createMenuBar();
         initUI();
 
@@ -99,14 +117,23 @@ public class TextEditor extends JFrame implements ActionListener {
 
         // Edit菜单
         JMenu editMenu = new JMenu("Edit");
+        JMenuItem undoItem = new JMenuItem("Undo");
+        JMenuItem redoItem = new JMenuItem("Redo");
+        JMenuItem incrementalFindItem = new JMenuItem("Incremental Find");
         JMenuItem findItem = new JMenuItem("Find");
         JMenuItem replaceItem = new JMenuItem("Replace");
+        JCheckBoxMenuItem searchIndexItem = new JCheckBoxMenuItem("Search Index");
         JMenuItem insertItem = new JMenuItem("Insert");
         JMenuItem blockMoveItem = new JMenuItem("Block Move");
         JMenuItem deleteItem = new JMenuItem("Delete");
 
+        editMenu.add(undoItem);
+        editMenu.add(redoItem);
+        editMenu.addSeparator();
+        editMenu.add(incrementalFindItem);
         editMenu.add(findItem);
         editMenu.add(replaceItem);
+        editMenu.add(searchIndexItem);
         editMenu.addSeparator();
         editMenu.add(insertItem);
         editMenu.add(blockMoveItem);
@@ -115,7 +142,9 @@ public class TextEditor extends JFrame implements ActionListener {
 
         // Help菜单
         JMenu helpMenu = new JMenu("Help");
+        JMenuItem memoryItem = new JMenuItem("Memory Usage");
         JMenuItem aboutItem = new JMenuItem("About");
+        helpMenu.add(memoryItem);
         helpMenu.add(aboutItem);
 
         menuBar.add(fileMenu);
@@ -131,7 +160,10 @@ public class TextEditor extends JFrame implements ActionListener {
         newItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_N, InputEvent.CTRL_DOWN_MASK));
         openItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O, InputEvent.CTRL_DOWN_MASK));
         saveItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, InputEvent.CTRL_DOWN_MASK));
-        findItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F, InputEvent.CTRL_DOWN_MASK));
+        undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+        redoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+        incrementalFindItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F, InputEvent.CTRL_DOWN_MASK));
+        findItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK));
         replaceItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_H, InputEvent.CTRL_DOWN_MASK));
         insertItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_I, InputEvent.CTRL_DOWN_MASK));
         blockMoveItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_M, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK));
@@ -143,13 +175,22 @@ public class TextEditor extends JFrame implements ActionListener {
         newItem.addActionListener(this);
         openItem.addActionListener(this);
         saveItem.addActionListener(this);
+        undoItem.addActionListener(this);
+        redoItem.addActionListener(this);
+        incrementalFindItem.addActionListener(this);
         findItem.addActionListener(this);
         replaceItem.addActionListener(this);
+        searchIndexItem.addActionListener(this);
         insertItem.addActionListener(this);
         blockMoveItem.addActionListener(this);
         deleteItem.addActionListener(this);
+        memoryItem.addActionListener(this);
         aboutItem.addActionListener(this);
         exitItem.addActionListener(this);
+
+        // 加载文件期间禁用：除Memory Usage/About/Exit外的全部操作
+        lockedActions.addAll(List.of(newItem, openItem, saveItem, undoItem, redoItem, incrementalFindItem,
+                findItem, replaceItem, searchIndexItem, insertItem, blockMoveItem, deleteItem));
     }
 
     /*
@@ -167,24 +208,29 @@ public class TextEditor extends JFrame implements ActionListener {
         textArea.setCaretColor(new Color(30, 144, 255));
         textArea.setSelectionColor(new Color(204, 232, 255));
         textArea.setSelectedTextColor(Color.BLACK);
-        textArea.addCaretListener(e -> updateStatusBar());
+        textArea.addCaretListener(e -> {
+            // 光标不是随输入移动（方向键、鼠标点击等）：之后的输入另起一条撤销记录
+            if (e.getDot() != editCaret) textModel.breakUndoCoalescing();
+            editCaret = -1;
+            updateStatusBar();
+        });
 
         JScrollPane scrollPane = new JScrollPane(textArea);
-        // 行号视图：置于滚动窗格行头，随行数变化更新
-        lineNumberArea = new JTextArea("1");
-        lineNumberArea.setEditable(false);
-        lineNumberArea.setBackground(new Color(245, 245, 245));
-        lineNumberArea.setForeground(new Color(120, 120, 120));
-        lineNumberArea.setFont(textArea.getFont());
-        lineNumberArea.setMargin(new Insets(8, 8, 8, 8));
-        scrollPane.setRowHeaderView(lineNumberArea);// 行号视图
+        // 行号视图：置于滚动窗格行头，只绘制可见行号
+        lineNumberGutter = new LineNumberGutter(textArea, textModel);
+        scrollPane.setRowHeaderView(lineNumberGutter);// 行号视图
         add(scrollPane, BorderLayout.CENTER);// 文本区视图
         // total lines: 0 setting
         statusLabel = new JLabel("total lines: 0");
         statusLabel.setBorder(new EmptyBorder(4, 8, 4, 8));
         statusLabel.setOpaque(true);
         statusLabel.setBackground(new Color(250, 250, 250));
-        add(statusLabel, BorderLayout.SOUTH);
+        // 底部：增量查找栏（默认隐藏）+ 状态栏
+        findBar = new FindBar(textArea, textModel);
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.add(findBar, BorderLayout.NORTH);
+        bottomPanel.add(statusLabel, BorderLayout.CENTER);
+        add(bottomPanel, BorderLayout.SOUTH);
 
         // 顶部工具栏：常用操作快速入口
         toolBar = new JToolBar();
@@ -209,61 +255,137 @@ public class TextEditor extends JFrame implements ActionListener {
     }
 
     /*
-     建立文档监听：将用户编辑变化同步到模型，并更新修改标记与状态栏
+     建立文档监听：把用户编辑的插入/删除区间增量同步到模型，并更新修改标记与状态栏
      */
     private void setupDocumentSync() {
         // 为文本区域的文档添加文档监听器
-        textArea.getDocument().addDocumentListener(new DocumentListener() {
+        documentSync = new DocumentListener() {
             @Override
             public void insertUpdate(DocumentEvent e) {
-                if (!isProgrammaticChange) { isModified = true; updateTitle(); }
-                syncModelAndStatus();
+                if (isProgrammaticChange) return; // 程序性修改：模型已是最新
+                try {
+                    String inserted = e.getDocument().getText(e.getOffset(), e.getLength());
+                    textModel.insertText(e.getOffset(), inserted);// 只同步插入的区间
+                } catch (BadLocationException ex) {
+                    resyncModelFromView();
+                }
+                editCaret = e.getOffset() + e.getLength();
+                onUserEdit();
             }
 
             @Override
             public void removeUpdate(DocumentEvent e) {
-                if (!isProgrammaticChange) { isModified = true; updateTitle(); }
-                syncModelAndStatus();
+                if (isProgrammaticChange) return;
+                textModel.deleteText(e.getOffset(), e.getLength());// 只同步删除的区间
+                editCaret = e.getOffset();
+                onUserEdit();
             }
 
             @Override
             public void changedUpdate(DocumentEvent e) {
-                if (!isProgrammaticChange) { isModified = true; updateTitle(); }
-                syncModelAndStatus();
+                // 仅属性变化，文本内容不变
             }
-        });
+        };
+        textArea.getDocument().addDocumentListener(documentSync);
     }
 
     /*
-     视图→模型同步：从文本区读取全文到模型，并刷新状态栏
+     用户编辑后：设置修改标记并刷新标题与状态栏
      */
-    private void syncModelAndStatus() {
-        textModel.setContentFromString(textArea.getText());// 视图到模型同步
+    private void onUserEdit() {
+        editCount++;
+        isModified = true;
+        updateTitle();
         updateStatusBar();
     }
 
     /*
-      模型→视图刷新：将模型内容写回文本区（服务操作后调用），避免监听循环
+     视图→模型全量同步：仅在增量同步异常时兜底使用
+     */
+    private void resyncModelFromView() {
+        textModel.setContentFromString(textArea.getText());
+    }
+
+    /*
+      模型→视图全量刷新：由模型内容重建文档并替换（异常兜底时调用），不经过整篇String
      */
     private void refreshViewFromModel() {
+        installDocument(ModelDocument.of(textModel, null));
+    }
+
+    /*
+     替换文本区的文档：同步监听随之迁移，替换本身不产生编辑事件
+     */
+    private void installDocument(Document doc) {
+        textArea.getDocument().removeDocumentListener(documentSync);
         isProgrammaticChange = true;
-        textArea.setText(textModel.getContentAsString());
-        isProgrammaticChange = false;
+        try {
+            textArea.setDocument(doc);
+        } finally {
+            isProgrammaticChange = false;
+        }
+        doc.addDocumentListener(documentSync);
+        updateStatusBar();
+    }
+
+    /*
+     加载期间锁定：文本区只读并禁用其余操作，避免在旧内容上的编辑随后被新内容整体替换而丢失
+     */
+    private void setLoading(boolean loading) {
+        textArea.setEditable(!loading);
+        for (AbstractButton action : lockedActions) {
+            action.setEnabled(!loading);
+        }
+    }
+
+    /*
+     模型→视图增量刷新：按服务返回的变更区间对文档做定点删除/插入，
+     光标、滚动位置与重绘范围只随变更大小变化
+     */
+    private void applyChangeToView(TextChange change) {
+        if (change != null) {
+            editCount++;
+            Document doc = textArea.getDocument();
+            isProgrammaticChange = true;
+            try {
+                if (change.getLength() > 0) {
+                    doc.remove(change.getOffset(), change.getLength());
+                }
+                if (!change.getText().isEmpty()) {
+                    doc.insertString(change.getOffset(), change.getText(), null);
+                }
+            } catch (BadLocationException ex) {
+                refreshViewFromModel(); // 区间失配时整体刷新
+            } finally {
+                isProgrammaticChange = false;
+            }
+        }
         updateStatusBar();
     }
 
     /*
-     更新状态栏：显示总行数、当前行列、选区长度、字符数与修改标记
+     请求刷新状态栏：合并到下一帧执行，频繁的光标/编辑事件不会重复计算
      */
     private void updateStatusBar() {
+        if (!statusTimer.isRunning()) {
+            statusTimer.start();
+        }
+    }
+
+    /*
+     刷新状态栏：显示总行数、当前行列、选区长度、字符数、单词数、非空白行数与修改标记，
+     统计值取自模型的增量计数器，与文件大小无关
+     */
+    private void refreshStatusBar() {
         int total = textModel.getTotalLines();
         int caret = textArea.getCaretPosition();
         int[] lc = offsetToLineCol(caret);
         int sel = Math.max(0, textArea.getSelectionEnd() - textArea.getSelectionStart());
-        int chars = textArea.getText().length();
+        int chars = textModel.getCharCount();
         String modifiedStr = isModified ? " | modified" : "";
         statusLabel.setText("total lines: " + total + " | line: " + (lc[0] + 1) + ", col: " + lc[1] +
-                " | selected: " + sel + " | chars: " + chars + modifiedStr);
+                " | selected: " + sel + " | chars: " + chars + " | words: " + textModel.getWordCount() +
+                " | non-blank lines: " + textModel.getNonBlankLineCount() + modifiedStr);
         updateLineNumbers();
     }
 
@@ -276,17 +398,11 @@ public class TextEditor extends JFrame implements ActionListener {
 
     /*
      将文本偏移量转换为行列位置
-     @param offset 文本偏移量（JTextArea基于全文的字符索引）
+     @param offset 文本偏移量（JTextArea基于全文的字符索引，与模型偏移一致）
      @return [行, 列]（0-based）
      */
     private int[] offsetToLineCol(int offset) {
-        try {
-            int line = textArea.getLineOfOffset(offset);
-            int col = offset - textArea.getLineStartOffset(line);
-            return new int[]{line, col};
-        } catch (Exception ex) {
-            return new int[]{0, 0};
-        }
+        return textModel.offsetToLineCol(offset);
     }
 
     /*
@@ -306,12 +422,24 @@ public class TextEditor extends JFrame implements ActionListener {
             case "Save":
                 saveFile();
                 break;
+            case "Undo":
+                undo();
+                break;
+            case "Redo":
+                redo();
+                break;
+            case "Incremental Find":
+                findBar.open();
+                break;
             case "Find":
                 findText();
                 break;
             case "Replace":
                 replaceText();
                 break;
+            case "Search Index":
+                setSearchIndexEnabled(((AbstractButton) e.getSource()).isSelected());
+                break;
             case "Insert":
                 insertText();
                 break;
@@ -321,6 +449,9 @@ public class TextEditor extends JFrame implements ActionListener {
             case "Delete":
                 deleteText();
                 break;
+            case "Memory Usage":
+                showMemoryUsage();
+                break;
             case "About":
                 showAbout();
                 break;
@@ -345,108 +476,231 @@ public class TextEditor extends JFrame implements ActionListener {
     }
 
     /*
-     打开文件：选择路径后用文件服务读取到模型并刷新视图
+     打开文件：后台读取到新模型并由它建立视图文档，期间显示进度并锁定编辑；
+     两步完成后在事件线程上同时接管模型内容与替换文档。取消时当前文档保持不变
      */
     public void openFile() {
         JFileChooser fileChooser = new JFileChooser();//创建文件选择器
         int result = fileChooser.showOpenDialog(this);//显示打开文件对话框，并获取用户操作结果
         if (result == JFileChooser.APPROVE_OPTION) {//如果用户选择了文件
             String filePath = fileChooser.getSelectedFile().getAbsolutePath();//获取用户选择的文件路径
-            if (fileService.openFile(filePath)) {
-                isProgrammaticChange = true;
-                refreshViewFromModel();//刷新视图，显示打开的文件内容
-                isProgrammaticChange = false;
-                currentFileName = fileChooser.getSelectedFile().getName();
-                isModified = false;
-                updateTitle();
-                JOptionPane.showMessageDialog(this, "File opened successfully!");
-            } else {
-                JOptionPane.showMessageDialog(this, "File open failed!", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            String fileName = fileChooser.getSelectedFile().getName();
+            JProgressBar progressBar = new JProgressBar(0, 1000);
+            FileService.ProgressListener progress = progressReporter(progressBar);
+            ModelDocument[] view = new ModelDocument[1];
+            setLoading(true);
+            Future<Boolean> task = fileService.openFileAsync(filePath, progress,
+                    loaded -> view[0] = ModelDocument.of(loaded, progress), ok -> {
+                closeProgressDialog(progressBar);
+                setLoading(false);
+                if (ok) {
+                    installDocument(view[0]);//替换视图文档，显示打开的文件内容
+                    textArea.setCaretPosition(0);
+                    currentFileName = fileName;
+                    isModified = false;
+                    updateTitle();
+                    JOptionPane.showMessageDialog(this, "File opened successfully!");
+                } else {
+                    showIoError("File open failed");
+                }
+            }, SwingUtilities::invokeLater);
+            showProgressDialog("Opening " + fileName, progressBar, task, () -> setLoading(false));
         }
     }
 
+    //读写失败提示：附上FileService记录的失败原因
+    private void showIoError(String title) {
+        String reason = fileService.getLastError();
+        JOptionPane.showMessageDialog(this, reason == null ? title + "!" : title + ": " + reason,
+                "Error", JOptionPane.ERROR_MESSAGE);
+    }
+
     /*
-     保存文件：同步模型并写出到用户选择的路径
+     保存文件：对模型取快照后在后台写出，期间可继续编辑；
+     保存期间有新的编辑时保留修改标记
      */
     public void saveFile() {
-        // 先同步模型与行数（保证保存的是当前文本区域内容）
-        syncModelAndStatus();
-
         JFileChooser fileChooser = new JFileChooser();//创建文件选择器
         int result = fileChooser.showSaveDialog(this);//显示保存文件对话框，并获取用户操作结果
         if (result == JFileChooser.APPROVE_OPTION) {//如果用户选择了文件
             String filePath = fileChooser.getSelectedFile().getAbsolutePath();//获取用户选择的文件路径
-            if (fileService.saveFile(filePath)) {
-                currentFileName = fileChooser.getSelectedFile().getName();
-                isModified = false;
-                updateTitle();
-                updateStatusBar();
-                JOptionPane.showMessageDialog(this, "File saved successfully!");
-            } else {
-                JOptionPane.showMessageDialog(this, "File save failed!", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            String fileName = fileChooser.getSelectedFile().getName();
+            long editsAtSave = editCount;
+            JProgressBar progressBar = new JProgressBar(0, 1000);
+            Future<Boolean> task = fileService.saveFileAsync(filePath, progressReporter(progressBar), ok -> {
+                closeProgressDialog(progressBar);
+                if (ok) {
+                    currentFileName = fileName;
+                    isModified = editCount != editsAtSave;
+                    updateTitle();
+                    updateStatusBar();
+                    JOptionPane.showMessageDialog(this, "File saved successfully!");
+                } else {
+                    showIoError("File save failed");
+                }
+            }, SwingUtilities::invokeLater);
+            showProgressDialog("Saving " + fileName, progressBar, task, () -> {});
         }
     }
 
+    // 进度回调：由后台线程转发到事件线程更新进度条（千分比）
+    private FileService.ProgressListener progressReporter(JProgressBar progressBar) {
+        return (processed, total) -> {
+            int value = total <= 0 ? 1000 : (int) (processed * 1000 / total);
+            SwingUtilities.invokeLater(() -> progressBar.setValue(value));
+        };
+    }
+
+    /*
+     非模态进度对话框：Cancel中断后台任务并执行onCancel；
+     任务在对话框显示前已完成时不再显示
+     */
+    private void showProgressDialog(String title, JProgressBar progressBar, Future<Boolean> task, Runnable onCancel) {
+        if (task.isDone()) return;
+        JDialog dialog = new JDialog(this, title, false);
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> {
+            if (task.cancel(true)) {
+                onCancel.run();
+            }
+            dialog.dispose();
+        });
+        JPanel panel = new JPanel(new BorderLayout(8, 8));
+        panel.setBorder(new EmptyBorder(12, 12, 12, 12));
+        progressBar.setStringPainted(true);
+        panel.add(progressBar, BorderLayout.CENTER);
+        panel.add(cancelButton, BorderLayout.EAST);
+        dialog.setContentPane(panel);
+        dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        dialog.pack();
+        dialog.setSize(Math.max(dialog.getWidth(), 360), dialog.getHeight());
+        dialog.setLocationRelativeTo(this);
+        dialog.setVisible(true);
+    }
+
+    // 关闭进度条所在的对话框（若已显示）
+    private void closeProgressDialog(JProgressBar progressBar) {
+        Window window = SwingUtilities.getWindowAncestor(progressBar);
+        if (window != null) window.dispose();
+    }
+
     // 工具栏按钮构造：复用菜单命令与事件处理
     private JButton createToolButton(String command) {
         JButton btn = new JButton(command);
         btn.setFocusable(false);
         btn.setActionCommand(command);
         btn.addActionListener(this);
+        lockedActions.add(btn);
         return btn;
     }
 
-    // 行号更新：根据模型总行数生成行号文本
+    // 行号更新：仅在总行数变化时通知行号栏
     private void updateLineNumbers() {
-        if (lineNumberArea == null) return;
-        int total = Math.max(1, textModel.getTotalLines());
-        StringBuilder sb = new StringBuilder();
-        for (int i = 1; i <= total; i++) {
-            sb.append(i).append('\n');
-        }
-        if (!sb.isEmpty()) sb.setLength(sb.length() - 1); // 去除末尾换行
-        lineNumberArea.setText(sb.toString());
+        if (lineNumberGutter == null) return;
+        lineNumberGutter.lineCountChanged();
     }
 
     /*
-     查找文本：弹窗输入，查找后选中首个匹配并提示总数
+     查找文本：弹窗输入（可选区分大小写、全词匹配），查找后选中首个匹配并提示总数
      */
     public void findText() {
-        String searchText = JOptionPane.showInputDialog(this, "Enter text to find:");
+        JTextField searchField = new JTextField(20);
+        JCheckBox matchCaseBox = new JCheckBox("Match case", true);
+        JCheckBox wholeWordBox = new JCheckBox("Whole word");
+        JCheckBox regexBox = new JCheckBox("Regular expression");
+        JCheckBox acrossLinesBox = new JCheckBox("Across lines (\\n matches a line break)");
+        JPanel panel = new JPanel(new GridLayout(0, 1, 0, 4));
+        panel.add(new JLabel("Enter text to find:"));
+        panel.add(searchField);
+        panel.add(matchCaseBox);
+        panel.add(wholeWordBox);
+        panel.add(regexBox);
+        panel.add(acrossLinesBox);
+        int option = JOptionPane.showConfirmDialog(this, panel, "Find", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        String searchText = option == JOptionPane.OK_OPTION ? searchField.getText() : null;
         if (searchText != null && !searchText.trim().isEmpty()) {
-            // 先同步一次，确保模型与文本框一致
-            syncModelAndStatus();
-            List<TextPosition> positions = findReplaceService.findText(searchText);//查找文本
-            if (positions != null && !positions.isEmpty()) {
-                TextPosition p = positions.getFirst();
-                try {
-                    int startOffset = textArea.getLineStartOffset(p.getLine()) + p.getColumn();//起始偏移量：行起始偏移量+列位置引索
-                    textArea.setCaretPosition(startOffset);//设置光标位置
-                    textArea.select(startOffset, startOffset + p.getLength());//选择匹配文本
-                    textArea.grabFocus();//获取焦点
-                } catch (Exception ignore) {}
-                JOptionPane.showMessageDialog(this, "Found " + positions.size() + " occurrences.");
+            boolean ignoreCase = !matchCaseBox.isSelected();
+            int count;
+            int startOffset = 0, endOffset = 0; // 首个匹配的区间
+            try {
+                if (acrossLinesBox.isSelected()) {
+                    // 跨行查找：文本查找时把\n转换为换行
+                    String query = regexBox.isSelected() ? searchText : unescapeLineBreaks(searchText);
+                    List<TextRange> ranges = findReplaceService.findRanges(query, regexBox.isSelected(), ignoreCase, wholeWordBox.isSelected());
+                    count = ranges.size();
+                    if (count > 0) {
+                        TextRange r = ranges.getFirst();
+                        startOffset = textModel.lineColToOffset(r.getStartLine(), r.getStartColumn());
+                        endOffset = textModel.lineColToOffset(r.getEndLine(), r.getEndColumn());
+                    }
+                } else {
+                    List<TextPosition> positions = regexBox.isSelected()
+                            ? findReplaceService.findRegex(searchText, ignoreCase, wholeWordBox.isSelected())
+                            : findReplaceService.findText(searchText, ignoreCase, wholeWordBox.isSelected());//查找文本
+                    count = positions.size();
+                    if (count > 0) {
+                        TextPosition p = positions.getFirst();
+                        startOffset = textModel.lineColToOffset(p.getLine(), p.getColumn());//起始偏移量：行起始偏移量+列位置引索
+                        endOffset = startOffset + p.getLength();
+                    }
+                }
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            if (count > 0) {
+                textArea.setCaretPosition(startOffset);//设置光标位置
+                textArea.select(startOffset, endOffset);//选择匹配文本
+                textArea.grabFocus();//获取焦点
+                JOptionPane.showMessageDialog(this, "Found " + count + " occurrences.");
             } else {
                 JOptionPane.showMessageDialog(this, "Text not found: " + searchText);
             }
         }
     }
 
+    // 把输入中的\n转换为换行符（单行输入框无法直接输入换行）
+    private static String unescapeLineBreaks(String text) {
+        return text.replace("\\n", "\n");
+    }
+
     /*
      替换文本：支持等长/不等长两种策略，操作后刷新视图并更新状态
      */
     public void replaceText() {
-        String target = JOptionPane.showInputDialog(this, "Enter text to find:");
-        if (target == null || target.isEmpty()) return;
-        String replacement = JOptionPane.showInputDialog(this, "Enter replacement text:");
-        if (replacement == null) return;
-        // 同步模型，确保替换基于最新文本
-        syncModelAndStatus();
+        JTextField targetField = new JTextField(20);
+        JTextField replacementField = new JTextField(20);
+        JCheckBox matchCaseBox = new JCheckBox("Match case", true);
+        JCheckBox wholeWordBox = new JCheckBox("Whole word");
+        JCheckBox regexBox = new JCheckBox("Regular expression ($1 refers to group 1)");
+        JCheckBox acrossLinesBox = new JCheckBox("Across lines (\\n matches a line break)");
+        JPanel panel = new JPanel(new GridLayout(0, 1, 0, 4));
+        panel.add(new JLabel("Enter text to find:"));
+        panel.add(targetField);
+        panel.add(new JLabel("Enter replacement text:"));
+        panel.add(replacementField);
+        panel.add(matchCaseBox);
+        panel.add(wholeWordBox);
+        panel.add(regexBox);
+        panel.add(acrossLinesBox);
+        int option = JOptionPane.showConfirmDialog(this, panel, "Replace", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (option != JOptionPane.OK_OPTION) return;
+        String target = targetField.getText();
+        String replacement = replacementField.getText();
+        if (target.isEmpty()) return;
         try {
-            int count = findReplaceService.replaceService(target, replacement);
-            refreshViewFromModel();
+            int count;
+            if (acrossLinesBox.isSelected()) {
+                boolean regex = regexBox.isSelected();
+                count = findReplaceService.replaceRanges(regex ? target : unescapeLineBreaks(target),
+                        regex ? replacement : unescapeLineBreaks(replacement),
+                        regex, !matchCaseBox.isSelected(), wholeWordBox.isSelected());
+            } else {
+                count = regexBox.isSelected()
+                        ? findReplaceService.replaceRegex(target, replacement, !matchCaseBox.isSelected(), wholeWordBox.isSelected())
+                        : findReplaceService.replaceAll(target, replacement, !matchCaseBox.isSelected(), wholeWordBox.isSelected());
+            }
+            applyChangeToView(findReplaceService.getLastChange());
             isModified = true;
             updateTitle();
             updateStatusBar();
@@ -489,19 +743,19 @@ public class TextEditor extends JFrame implements ActionListener {
 
         int result = JOptionPane.showConfirmDialog(this, panel, "Insert Text", JOptionPane.OK_CANCEL_OPTION);
         if (result == JOptionPane.OK_OPTION) {
-            // 同步模型，以当前光标位置为插入点
-            syncModelAndStatus();
+            // 以当前光标位置为插入点（模型已随编辑增量同步）
             int caret = textArea.getCaretPosition();//获取光标位置
             int[] lc = offsetToLineCol(caret);//将光标位置转换为行列
+            TextChange change;
             if (insertStringBtn.isSelected()) {
                 String textToInsert = stringField.getText();//获取要插入的字符串
-                insertService.insertString(lc[0], lc[1], textToInsert);//插入字符串
+                change = insertService.insertString(lc[0], lc[1], textToInsert);//插入字符串
             } else {
                 String blockText = blockArea.getText();//获取文本块内容
                 String[] lines = blockText.split("\n", -1);//将文本块内容按行分割
-                insertService.insertTextBlock(lc[0], lc[1], lines);//插入文本块
+                change = insertService.insertTextBlock(lc[0], lc[1], lines);//插入文本块
             }
-            refreshViewFromModel();
+            applyChangeToView(change);
         }
     }
 
@@ -553,13 +807,13 @@ public class TextEditor extends JFrame implements ActionListener {
 
         int result = JOptionPane.showConfirmDialog(this, panel, "Block Move", JOptionPane.OK_CANCEL_OPTION);
         if (result == JOptionPane.OK_OPTION) {
-            syncModelAndStatus();
             try {
+                TextChange change;
                 if (lineBlockBtn.isSelected()) {
                     int s = Integer.parseInt(startLineField.getText()) - 1;//获取起始行
                     int e = Integer.parseInt(endLineField.getText()) - 1;//获取结束行
                     int t = Integer.parseInt(targetLineField.getText()) - 1;//获取目标行
-                    blockMoveService.moveLineBlock(s, e, t);//移动行块
+                    change = blockMoveService.moveLineBlock(s, e, t);//移动行块
                 } else {
                     int sL = Integer.parseInt(cStartLineField.getText()) - 1;//获取起始行
                     int eL = Integer.parseInt(cEndLineField.getText()) - 1;//获取结束行
@@ -567,10 +821,11 @@ public class TextEditor extends JFrame implements ActionListener {
                     int eC = Integer.parseInt(cEndColField.getText());//获取结束列
                     int tL = Integer.parseInt(cTargetLineField.getText()) - 1;//获取目标行
                     int tC = Integer.parseInt(cTargetColField.getText());//获取目标列
-                    blockMoveService.moveColumnBlock(sL, eL, sC, eC, tL, tC);//移动列块
+                    change = blockMoveService.moveColumnBlock(sL, eL, sC, eC, tL, tC);//移动列块
                 }
-                refreshViewFromModel();
+                applyChangeToView(change);
             } catch (Exception ex) {
+                refreshViewFromModel(); // 操作中途失败时以模型为准重建视图
                 JOptionPane.showMessageDialog(this, "Parameter error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
         }
@@ -586,9 +841,7 @@ public class TextEditor extends JFrame implements ActionListener {
             int end = textArea.getSelectionEnd();
             int[] sLC = offsetToLineCol(start);//获取起始行列
             int[] eLC = offsetToLineCol(end);//获取结束行列
-            syncModelAndStatus();
-            deleteService.deleteTextBlock(sLC[0], sLC[1], eLC[0], eLC[1]);
-            refreshViewFromModel();
+            applyChangeToView(deleteService.deleteTextBlock(sLC[0], sLC[1], eLC[0], eLC[1]));
         } else {
             // 无选择时，弹框输入要删除的范围
             JPanel panel = new JPanel(new GridLayout(4, 2));
@@ -607,16 +860,72 @@ public class TextEditor extends JFrame implements ActionListener {
                     int sc = Integer.parseInt(sCol.getText());//获取起始列
                     int el = Integer.parseInt(eLine.getText()) - 1;//获取结束行
                     int ec = Integer.parseInt(eCol.getText());//获取结束列
-                    syncModelAndStatus();
-                    deleteService.deleteTextBlock(sl, sc, el, ec);
-                    refreshViewFromModel();
+                    applyChangeToView(deleteService.deleteTextBlock(sl, sc, el, ec));
                 } catch (Exception ex) {
+                    refreshViewFromModel(); // 操作中途失败时以模型为准重建视图
                     JOptionPane.showMessageDialog(this, "Parameter error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                 }
             }
         }
     }
 
+    /*
+     撤销：模型换回变更前的快照，视图只按变更区间更新
+     */
+    public void undo() {
+        TextChange change = textModel.undo();
+        if (change != null) {
+            applyChangeToView(change);
+            textArea.setCaretPosition(change.getOffset() + change.getText().length());
+            isModified = true;
+            updateTitle();
+        }
+    }
+
+    /*
+     重做：与撤销对称
+     */
+    public void redo() {
+        TextChange change = textModel.redo();
+        if (change != null) {
+            applyChangeToView(change);
+            textArea.setCaretPosition(change.getOffset() + change.getText().length());
+            isModified = true;
+            updateTitle();
+        }
+    }
+
+    /*
+     启用/停用查找索引：启用后反复查找只验证候选行，并提示索引规模与估算内存
+     */
+    public void setSearchIndexEnabled(boolean enabled) {
+        findReplaceService.setIndexEnabled(enabled);
+        TrigramIndex index = findReplaceService.getIndex();
+        if (index != null) {
+            JOptionPane.showMessageDialog(this, String.format(Locale.ENGLISH,
+                    "Search index built: %d lines (%d distinct), %d trigrams, about %.1f MB (%.1f MB saved by sharing repeated lines)",
+                    index.getIndexedLines(), index.getDistinctLineSets(), index.getGramCount(),
+                    index.estimateMemoryBytes() / 1048576.0, index.getSharedBytesSaved() / 1048576.0));
+        }
+    }
+
+    /*
+     内存占用：文档存储的堆内存估算及每MB文本的开销，另列撤销历史与查找索引
+     */
+    public void showMemoryUsage() {
+        double textMb = textModel.getLength() * 2 / 1048576.0; // 按UTF-16计的文本大小
+        double heapMb = textModel.estimateMemoryBytes() / 1048576.0;
+        UndoHistory history = textModel.getUndoHistory();
+        TrigramIndex index = findReplaceService.getIndex();
+        JOptionPane.showMessageDialog(this, String.format(Locale.ENGLISH,
+                "Document: %d chars (%.1f MB as UTF-16)%nStorage heap: about %.1f MB (%.2f MB per MB of text)%n"
+                        + "Undo history: about %.1f MB%nSearch index: %s",
+                textModel.getLength(), textMb, heapMb, textMb > 0 ? heapMb / textMb : 0.0,
+                history == null ? 0.0 : history.estimateMemoryBytes() / 1048576.0,
+                index == null ? "off" : String.format(Locale.ENGLISH, "about %.1f MB", index.estimateMemoryBytes() / 1048576.0)),
+                "Memory Usage", JOptionPane.INFORMATION_MESSAGE);
+    }
+
     /*
      关于窗口：显示项目信息
      */
@@ -1,72 +1,562 @@
-import java.util.LinkedList;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 
 /*
- 文本数据模型：以“行列表”的形式管理文本内容。
+ 文本数据模型：以“行”为单位对外提供文本内容的访问与编辑。
  - 行/列索引均为0起始（0-based）
  - 始终至少存在一行（空文档时为单个空字符串）
+ - 底层存储为 TextStorage（片段表或绳索树），按行操作换算为字符区间的插入/删除
 */
 
 public class TextModel {
-    // 行容器：每个元素代表一行文本；LinkedList便于整行插入/删除
-    private LinkedList<String> lines;
+    //存储后端：AUTO 按文本规模选择（见 TextStorage.forContent）
+    public enum Backend { AUTO, PIECE_TABLE, ROPE }
+
+    private final Backend backend; // 选定的存储后端
+    // 文本存储：按行定位与编辑均为 O(log n)
+    private TextStorage table;
+
+    // 批量编辑：beginBatch/commit之间所有编辑合并为一个区间，提交时只通知一次监听器
+    private int changeDepth = 0;      // 嵌套层数，0表示不在批量编辑中
+    private int changeStart;          // 受影响区间起点（最小编辑偏移）
+    private int changeTail;           // 区间之后未被触及的尾部长度
+    private int lengthAtBegin;        // 开始时的全文长度
+    private TextStorage storageAtBegin; // 开始时的存储对象（整体替换内容后不再相同）
+    private TextStorage tableAtBegin; // 开始时的存储快照：用于回滚、撤销记录与提交时的行号换算
+    private long wordsAtBegin;        // 开始时的单词数
+    private int nonBlankAtBegin;      // 开始时的非空白行数
+    private long changeDelta;         // 期间各次编辑的删除与插入长度之和（撤销记录的内存估算）
+    private boolean rollbackOnly;     // 内层已回滚：最外层结束时整体回滚
+
+    // 撤销历史：未启用时为null（快照等临时模型不记录）
+    private UndoHistory history;
+
+    // 文档统计：随每次编辑增量维护（字符数与行数直接取自存储）
+    private long wordCount = 0;       // 单词数（以空白分隔）
+    private int nonBlankLines = 0;    // 非空白行数
+
+    private final List<TextModelListener> listeners = new ArrayList<>(); // 行变更监听器
 
     //构造函数：初始化为包含一条空行的文档
     public TextModel() {
-        lines = new LinkedList<>();
-        lines.add(""); // 初始空行，保证至少一行
+        this(Backend.AUTO);
+    }
+
+    //构造函数：指定存储后端
+    public TextModel(Backend backend) {
+        this.backend = backend;
+        table = createStorage(""); // 空文档即一行空字符串
     }
 
-    //获取总行数，返回当前文本的行数（等同于行列表大小）
+    //获取总行数，返回当前文本的行数（等同于换行数+1）
     public int getTotalLines() {
-        return lines.size();
+        return table.getLineCount();
     }
 
     //插入行
     public void insertLine(int lineIndex, String text) {
-        if (lineIndex >= 0 && lineIndex <= lines.size()) {
-            lines.add(lineIndex, text);
+        insertLines(lineIndex, Collections.singletonList(text));
+    }
+
+    //在第lineIndex行之前插入多行：各行以\n连接后一次插入
+    public void insertLines(int lineIndex, List<? extends CharSequence> lines) {
+        int total = table.getLineCount();
+        if (lines.isEmpty() || lineIndex < 0 || lineIndex > total) return;
+        StringBuilder sb = new StringBuilder();
+        if (lineIndex == total) {
+            // 追加到末尾：在最后一行之后补一个换行
+            for (CharSequence line : lines) sb.append('\n').append(line);
+            replace(table.length(), 0, sb.toString());
+        } else {
+            for (CharSequence line : lines) sb.append(line).append('\n');
+            replace(table.getLineStart(lineIndex), 0, sb.toString());
         }
     }
 
     //删除行
     public void deleteLine(int lineIndex) {
-        if (lineIndex >= 0 && lineIndex < lines.size()) {
-            lines.remove(lineIndex);
-            if (lines.isEmpty()) {
-                lines.add("");
-            }
+        removeLines(lineIndex, lineIndex + 1);
+    }
+
+    //删除[from, to)范围的整行：一次删除完成，超出范围的部分被截断
+    public void removeLines(int from, int to) {
+        int total = table.getLineCount();
+        from = Math.max(from, 0);
+        to = Math.min(to, total);
+        if (from >= to) return;
+        if (from == 0 && to == total) {
+            replace(0, table.length(), ""); // 删除全部行时清空，保证至少一行
+        } else if (to < total) {
+            int start = table.getLineStart(from);
+            replace(start, table.getLineStart(to) - start, "");
+        } else {
+            // 删除到最后一行：连同其前面的换行一起删除
+            int start = table.getLineStart(from) - 1;
+            replace(start, table.length() - start, "");
         }
     }
 
+    /*
+     把[from, to)范围的整行移动到第target行之前（target为移动前的行号，可为总行数表示移到末尾）。
+     存储树直接拆分重接，不复制文本，O(log n)；target落在块内或紧邻块时不做任何事。
+     涉及最后一行时临时补一个换行，使所有行都以\n结尾，移动后再去掉。
+     */
+    public void moveLines(int from, int to, int target) {
+        int total = table.getLineCount();
+        if (from < 0 || to > total || from >= to || target < 0 || target > total) return;
+        if (target >= from && target <= to) return;
+        runAtomically(() -> {
+            boolean padded = to == total || target == total;
+            if (padded) replace(table.length(), 0, "\n");
+            int start = table.getLineStart(from);
+            int end = table.getLineStart(to);
+            int dest = table.getLineStart(target);
+            table.move(start, end - start, dest);
+            // 整行移动不改变统计值；受影响区间为块与目标之间的全部文本
+            int lo = Math.min(start, dest);
+            int hi = Math.max(end, dest);
+            recordChange(lo, hi - lo, hi - lo);
+            if (padded) replace(table.length() - 1, 1, "");
+        });
+    }
+
     //获取行内容
     public String getLine(int index) {
-        if (index >= 0 && index < lines.size()) {
-            return lines.get(index);
+        if (index >= 0 && index < table.getLineCount()) {
+            int start = table.getLineStart(index);
+            return table.getText(start, lineEnd(index) - start);
         }
         return null;
     }
 
+    //读取全文偏移[offset, offset+length)范围的文本
+    public String getText(int offset, int length) {
+        return table.getText(offset, length);
+    }
+
+    //把全文偏移[offset, offset+length)范围的文本追加到sb（不生成中间字符串）
+    public void appendText(StringBuilder sb, int offset, int length) {
+        table.appendTo(sb, offset, length);
+    }
+
     //更新行内容
     public void updateLine(int index, String newContent) {
-        if (index >= 0 && index < lines.size()) {
-            lines.set(index, newContent);
+        if (index >= 0 && index < table.getLineCount()) {
+            int start = table.getLineStart(index);
+            replace(start, lineEnd(index) - start, newContent);
+        }
+    }
+
+    //在全文偏移offset处插入文本（视图到模型的增量同步）
+    public void insertText(int offset, String text) {
+        if (offset >= 0 && offset <= table.length()) {
+            replace(offset, 0, text);
+        }
+    }
+
+    //把全文偏移[offset, offset+length)范围替换为text：一次拼接完成，用于批量替换
+    public void replaceText(int offset, int length, String text) {
+        if (offset >= 0 && length >= 0 && offset + length <= table.length()) {
+            replace(offset, length, text);
         }
     }
 
-    //从字符串设置内容（视图到模型同步）
+    //删除全文偏移[offset, offset+length)范围的文本（视图到模型的增量同步）
+    public void deleteText(int offset, int length) {
+        if (offset >= 0 && length > 0 && offset + length <= table.length()) {
+            replace(offset, length, "");
+        }
+    }
+
+    //从字符串设置内容（视图到模型同步）：整段文本直接作为原始缓冲区，不按行拆分
     public void setContentFromString(String content) {
-        lines.clear();
-        String[] contentLines = content.split("\n", -1);
-        for (String line : contentLines) {
-            lines.add(line);
+        int oldLength = table.length();
+        int oldLines = table.getLineCount();
+        table = createStorage(content);
+        if (history != null) history.clear(); // 旧快照不再属于当前存储
+        wordCount = 0;
+        nonBlankLines = 0;
+        accumulateStats(content, 1);
+        recordChange(0, oldLength, content.length());
+        if (changeDepth == 0) fireLinesReplaced(0, oldLines, table.getLineCount());
+    }
+
+    /*
+     从内存映射文本设置内容：片段表直接以映射区为原始缓冲区，统计值取自扫描结果，
+     不再解码全文。指定绳索树后端时退化为整体解码。
+     */
+    public void setContent(MappedText text) {
+        if (backend == Backend.ROPE) {
+            setContentFromString(text.toString());
+            return;
+        }
+        int oldLength = table.length();
+        int oldLines = table.getLineCount();
+        table = new PieceTable(text, text.getLineFeeds());
+        if (history != null) history.clear(); // 旧快照不再属于当前存储
+        wordCount = text.getWordCount();
+        nonBlankLines = text.getNonBlankLines();
+        recordChange(0, oldLength, text.length());
+        if (changeDepth == 0) fireLinesReplaced(0, oldLines, table.getLineCount());
+    }
+
+    //当前使用的存储后端设置
+    public Backend getBackend() {
+        return backend;
+    }
+
+    //只读快照：O(1)共享当前内容与统计，供后台线程保存、搜索等读取
+    public TextModel snapshot() {
+        TextModel copy = new TextModel(backend);
+        copy.table = table.snapshot();
+        copy.wordCount = wordCount;
+        copy.nonBlankLines = nonBlankLines;
+        return copy;
+    }
+
+    //整体接管另一个模型的内容（后台加载完成后一次性切换），O(1)
+    public void replaceContent(TextModel loaded) {
+        int oldLength = table.length();
+        int oldLines = table.getLineCount();
+        table = loaded.table;
+        if (history != null) history.clear(); // 旧快照不再属于当前存储
+        wordCount = loaded.wordCount;
+        nonBlankLines = loaded.nonBlankLines;
+        recordChange(0, oldLength, table.length());
+        if (changeDepth == 0) fireLinesReplaced(0, oldLines, table.getLineCount());
+    }
+
+    //字符总数（状态栏统计）
+    public int getCharCount() {
+        return table.length();
+    }
+
+    //单词数（状态栏统计）
+    public long getWordCount() {
+        return wordCount;
+    }
+
+    //非空白行数（状态栏统计）
+    public int getNonBlankLineCount() {
+        return nonBlankLines;
+    }
+
+    //全文字符数
+    public int getLength() {
+        return table.length();
+    }
+
+    //文本存储的堆内存估算（字节），不含撤销历史与查找索引
+    public long estimateMemoryBytes() {
+        return table.estimateMemoryBytes();
+    }
+
+    //第lineIndex行行首在全文中的偏移
+    public int getLineStartOffset(int lineIndex) {
+        return table.getLineStart(lineIndex);
+    }
+
+    //全文偏移offset所在的行号
+    public int getLineOfOffset(int offset) {
+        return table.getLineOfOffset(offset);
+    }
+
+    /*
+     偏移→[行, 列]（0起始）：行号由存储树节点缓存的换行数前缀和定位，O(log n)。
+     偏移越界时截断到文档范围内。
+     */
+    public int[] offsetToLineCol(int offset) {
+        offset = Math.max(0, Math.min(offset, table.length()));
+        int line = table.getLineOfOffset(offset);
+        return new int[]{line, offset - table.getLineStart(line)};
+    }
+
+    //[行, 列]→偏移，O(log n)：列超出行长时截断到行尾（视图同步用）
+    public int lineColToOffset(int lineIndex, int column) {
+        int start = table.getLineStart(lineIndex);
+        return start + Math.max(0, Math.min(column, lineEnd(lineIndex) - start));
+    }
+
+    //[行, 列]→偏移，编辑服务用：行须在[0, 总行数)内、列须在[0, 行长]内，否则抛出IllegalArgumentException
+    public int checkedLineColToOffset(int lineIndex, int column) {
+        int total = table.getLineCount();
+        if (lineIndex < 0 || lineIndex >= total) {
+            throw new IllegalArgumentException("line index out of bounds: " + lineIndex + " (lines: " + total + ")");
+        }
+        int start = table.getLineStart(lineIndex);
+        int lineLength = lineEnd(lineIndex) - start;
+        if (column < 0 || column > lineLength) {
+            throw new IllegalArgumentException("column index out of bounds: " + column
+                    + " (line " + lineIndex + " has " + lineLength + " chars)");
+        }
+        return start + column;
+    }
+
+    /*
+     开始批量编辑：之后的所有编辑合并为一个结构变更，直到匹配的commit或rollback。
+     期间不通知监听器，提交时按受影响的行范围只通知一次。可嵌套，仅最外层生效。
+     */
+    public void beginBatch() {
+        if (changeDepth++ == 0) {
+            lengthAtBegin = table.length();
+            changeStart = Integer.MAX_VALUE;
+            changeTail = Integer.MAX_VALUE;
+            storageAtBegin = table;
+            tableAtBegin = table.snapshot();
+            wordsAtBegin = wordCount;
+            nonBlankAtBegin = nonBlankLines;
+            changeDelta = 0;
+            rollbackOnly = false;
+        }
+    }
+
+    /*
+     提交批量编辑：返回“旧文本中被替换的区间 + 新文本”，无编辑时返回null。
+     内层调用返回null，由最外层统一返回；启用撤销时整组编辑记为一条撤销记录。
+     */
+    public TextChange commit() {
+        if (changeDepth == 0) return null;
+        if (changeDepth == 1 && rollbackOnly) {
+            rollback();
+            return null;
+        }
+        if (--changeDepth > 0) return null;
+        TextStorage before = tableAtBegin;
+        boolean sameStorage = storageAtBegin == table;
+        tableAtBegin = null;
+        storageAtBegin = null;
+        if (changeStart == Integer.MAX_VALUE) return null;
+        int removed = lengthAtBegin - changeTail - changeStart;
+        int inserted = table.length() - changeTail - changeStart;
+        if (history != null && sameStorage) {
+            history.record(new UndoHistory.Edit(before, wordsAtBegin, nonBlankAtBegin,
+                    table.snapshot(), wordCount, nonBlankLines, changeStart, removed, inserted, changeDelta, false));
         }
-        if (lines.isEmpty()) {
-            lines.add("");
+        // 合并后的行事件：旧行范围取自开始时的快照，新行范围取自当前内容
+        int firstLine = before.getLineOfOffset(changeStart);
+        int oldLastLine = before.getLineOfOffset(changeStart + removed);
+        int newLastLine = table.getLineOfOffset(changeStart + inserted);
+        fireLinesReplaced(firstLine, oldLastLine - firstLine + 1, newLastLine - firstLine + 1);
+        return new TextChange(changeStart, removed, table.getText(changeStart, inserted));
+    }
+
+    /*
+     回滚批量编辑：O(1)换回开始时的存储快照与统计值，不通知监听器（期间未发出过事件）。
+     内层调用只标记回滚，由最外层结束时整体回滚。
+     */
+    public void rollback() {
+        if (changeDepth == 0) return;
+        if (--changeDepth > 0) {
+            rollbackOnly = true;
+            return;
         }
+        table = storageAtBegin;
+        table.restore(tableAtBegin);
+        wordCount = wordsAtBegin;
+        nonBlankLines = nonBlankAtBegin;
+        tableAtBegin = null;
+        storageAtBegin = null;
+        rollbackOnly = false;
+    }
+
+    //以批量编辑执行一组编辑，返回合并后的变更描述；异常时回滚全部编辑并继续抛出
+    public TextChange runAtomically(Runnable edit) {
+        beginBatch();
+        try {
+            edit.run();
+        } catch (RuntimeException e) {
+            rollback();
+            throw e;
+        }
+        return commit();
     }
 
     //将内容转换为字符串（模型到视图同步）
     public String getContentAsString() {
-        return String.join("\n", lines);
+        StringBuilder sb = new StringBuilder(table.length());
+        table.appendTo(sb);
+        return sb.toString();
+    }
+
+    //按文档顺序分块遍历全文（只读、不复制），供保存等流式输出使用
+    public Iterator<CharBuffer> contentChunks() {
+        return table.chunks();
+    }
+
+    /*
+     所有编辑的统一入口：把[offset, offset+length)替换为text。
+     统计只重算受影响的行：先减去编辑前这些行的计数，编辑后再加上新行的计数。
+     不在批量编辑中的单次编辑（视图逐键同步）各自记为一条撤销记录，连续输入由历史合并。
+     */
+    private void replace(int offset, int length, String text) {
+        if (changeDepth == 0 && history != null && (length > 0 || !text.isEmpty())) {
+            TextStorage before = table.snapshot();
+            long words = wordCount;
+            int nonBlank = nonBlankLines;
+            boolean typing = isTyping(offset, length, text);
+            apply(offset, length, text);
+            history.record(new UndoHistory.Edit(before, words, nonBlank,
+                    table.snapshot(), wordCount, nonBlankLines, offset, length, text.length(),
+                    (long) length + text.length(), typing));
+            return;
+        }
+        apply(offset, length, text);
+    }
+
+    //执行一次替换并维护统计、变更区间与监听器通知
+    private void apply(int offset, int length, String text) {
+        int firstLine = table.getLineOfOffset(offset);
+        int oldLastLine = table.getLineOfOffset(offset + length);
+        accumulateStats(linesText(firstLine, oldLastLine), -1);
+        if (length > 0) table.delete(offset, length);
+        if (!text.isEmpty()) table.insert(offset, text);
+        int newLastLine = table.getLineOfOffset(offset + text.length());
+        accumulateStats(linesText(firstLine, newLastLine), 1);
+        recordChange(offset, length, text.length());
+        if (changeDepth == 0) {
+            fireLinesReplaced(firstLine, oldLastLine - firstLine + 1, newLastLine - firstLine + 1);
+        }
+    }
+
+    //单字符输入或删除（不含换行）：可与相邻的输入合并为一条撤销记录
+    private boolean isTyping(int offset, int length, String text) {
+        if (length == 0) return text.length() == 1 && text.charAt(0) != '\n';
+        return length == 1 && text.isEmpty() && table.getText(offset, 1).charAt(0) != '\n';
+    }
+
+    /*
+     启用撤销/重做：最多保留maxEntries条、估算内存不超过maxBytes，超出时丢弃最旧的记录。
+     重复调用会清空已有历史。
+     */
+    public void enableUndo(int maxEntries, long maxBytes) {
+        history = new UndoHistory(maxEntries, maxBytes);
+    }
+
+    //撤销历史，未启用时为null
+    public UndoHistory getUndoHistory() {
+        return history;
+    }
+
+    public boolean canUndo() {
+        return history != null && changeDepth == 0 && history.canUndo();
+    }
+
+    public boolean canRedo() {
+        return history != null && changeDepth == 0 && history.canRedo();
+    }
+
+    //下一次输入不与之前的输入合并（光标跳转等）
+    public void breakUndoCoalescing() {
+        if (history != null) history.seal();
+    }
+
+    /*
+     撤销最近一次变更：O(1)换回变更前的存储快照与统计值，
+     返回视图需要执行的变更（只含变更区间的旧文本）；无可撤销时返回null
+     */
+    public TextChange undo() {
+        if (!canUndo()) return null;
+        UndoHistory.Edit edit = history.undo();
+        return restore(edit.before, edit.wordsBefore, edit.nonBlankBefore,
+                edit.start, edit.inserted, edit.removed);
+    }
+
+    //重做最近一次撤销的变更，与undo对称
+    public TextChange redo() {
+        if (!canRedo()) return null;
+        UndoHistory.Edit edit = history.redo();
+        return restore(edit.after, edit.wordsAfter, edit.nonBlankAfter,
+                edit.start, edit.removed, edit.inserted);
+    }
+
+    //换回快照：当前[start, start+currentLength)变为快照中的[start, start+restoredLength)
+    private TextChange restore(TextStorage target, long words, int nonBlank,
+                               int start, int currentLength, int restoredLength) {
+        int firstLine = table.getLineOfOffset(start);
+        int oldLastLine = table.getLineOfOffset(start + currentLength);
+        table.restore(target);
+        wordCount = words;
+        nonBlankLines = nonBlank;
+        int newLastLine = table.getLineOfOffset(start + restoredLength);
+        fireLinesReplaced(firstLine, oldLastLine - firstLine + 1, newLastLine - firstLine + 1);
+        return new TextChange(start, currentLength, table.getText(start, restoredLength));
+    }
+
+    //注册行变更监听器
+    public void addTextModelListener(TextModelListener listener) {
+        listeners.add(listener);
+    }
+
+    //移除行变更监听器
+    public void removeTextModelListener(TextModelListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireLinesReplaced(int firstLine, int removedLines, int insertedLines) {
+        for (TextModelListener listener : listeners) {
+            listener.linesReplaced(this, firstLine, removedLines, insertedLines);
+        }
+    }
+
+    //[firstLine, lastLine]各行的完整文本
+    private String linesText(int firstLine, int lastLine) {
+        int start = table.getLineStart(firstLine);
+        return table.getText(start, lineEnd(lastLine) - start);
+    }
+
+    //统计text中的单词数与非空白行数，按sign（+1/-1）累加到计数器
+    private void accumulateStats(String text, int sign) {
+        int words = 0;
+        int nonBlank = 0;
+        boolean inWord = false;
+        boolean lineHasText = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                if (lineHasText) nonBlank++;
+                lineHasText = false;
+                inWord = false;
+            } else if (Character.isWhitespace(c)) {
+                inWord = false;
+            } else {
+                if (!inWord) words++;
+                inWord = true;
+                lineHasText = true;
+            }
+        }
+        if (lineHasText) nonBlank++;
+        wordCount += (long) sign * words;
+        nonBlankLines += sign * nonBlank;
+    }
+
+    //合并到当前跟踪的受影响区间：起点取最小偏移，尾部取最短的未触及长度
+    private void recordChange(int offset, int removed, int inserted) {
+        if (changeDepth == 0 || (removed == 0 && inserted == 0)) return;
+        changeDelta += (long) removed + inserted;
+        changeStart = Math.min(changeStart, offset);
+        changeTail = Math.min(changeTail, table.length() - offset - inserted);
+    }
+
+    //按后端设置创建存储
+    private TextStorage createStorage(String content) {
+        switch (backend) {
+            case PIECE_TABLE:
+                return new PieceTable(content);
+            case ROPE:
+                return new Rope(content);
+            default:
+                return TextStorage.forContent(content);
+        }
+    }
+
+    //行尾偏移（不含换行符）
+    private int lineEnd(int index) {
+        if (index + 1 < table.getLineCount()) {
+            return table.getLineStart(index + 1) - 1;
+        }
+        return table.length();
     }
 }
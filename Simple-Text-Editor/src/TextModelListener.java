@@ -0,0 +1,11 @@
+/*
+ 模型监听器：每次编辑完成后按行通知受影响的范围，供索引等派生数据增量更新。
+ 批量编辑（TextModel.beginBatch/commit、runAtomically）期间不通知，提交时合并为一次通知。
+ */
+public interface TextModelListener {
+    /*
+     行区间替换：编辑前从firstLine开始的removedLines行，已被编辑后的insertedLines行取代
+     （行内修改时两者均为1；整体设置内容时为全部行）。回调时模型已是编辑后的状态。
+     */
+    void linesReplaced(TextModel model, int firstLine, int removedLines, int insertedLines);
+}
@@ -0,0 +1,67 @@
+import java.nio.CharBuffer;
+import java.util.Iterator;
+
+/*
+ 文本存储接口：TextModel 的底层后端，按字符偏移编辑、按换行数定位行。
+ 实现类：PieceTable（片段表）、Rope（绳索树）。
+ - 偏移均为0起始的字符下标
+ - 行号为0起始；总行数 = 换行数 + 1
+*/
+
+public interface TextStorage {
+    // 超过该字符数的文本默认使用片段表（原文零拷贝），其余使用绳索树
+    int LARGE_CONTENT_THRESHOLD = 1 << 20;
+
+    //文档总字符数
+    int length();
+
+    //总行数
+    int getLineCount();
+
+    //第line行行首偏移
+    int getLineStart(int line);
+
+    //offset所在行号
+    int getLineOfOffset(int offset);
+
+    //读取[offset, offset+length)范围的文本
+    String getText(int offset, int length);
+
+    //全文追加到sb
+    void appendTo(StringBuilder sb);
+
+    //把[offset, offset+length)范围的文本追加到sb
+    void appendTo(StringBuilder sb, int offset, int length);
+
+    //按文档顺序分块遍历全文（只读、不复制），用于流式写出
+    Iterator<CharBuffer> chunks();
+
+    //在offset处插入文本
+    void insert(int offset, String text);
+
+    //删除[offset, offset+length)范围的文本
+    void delete(int offset, int length);
+
+    /*
+     把[offset, offset+length)移动到target处（target为移动前的偏移，不在区间内部）。
+     只拆分与重新拼接树，不复制文本，O(log n)
+     */
+    void move(int offset, int length, int target);
+
+    //O(1)快照：与当前内容相同，之后的编辑互不影响，可在其他线程只读访问
+    TextStorage snapshot();
+
+    //堆内存估算（字节）：文本、树节点与换行位置表；内存映射的原文在堆外，不计入
+    long estimateMemoryBytes();
+
+    //O(1)恢复为本存储此前取得的快照（撤销/重做），之后仍可继续编辑
+    void restore(TextStorage snapshot);
+
+    //按文本规模选择后端
+    static TextStorage forContent(String content) {
+        if (content.length() >= LARGE_CONTENT_THRESHOLD) {
+            return new PieceTable(content);
+        }
+        return new Rope(content);
+    }
+}
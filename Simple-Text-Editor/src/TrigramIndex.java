@@ -0,0 +1,436 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ 三元组（trigram）索引：记录每个三字符片段出现在哪些行，查找时先求候选行再逐行精确验证。
+ - 片段按大小写折叠后的字符建立，区分/忽略大小写的查询都可使用（候选为超集）
+ - 作为模型监听器随编辑增量更新：只处理受影响行新增/消失的片段，不做全量重建
+ - 行条目对象在插入/删除行时保持不变，行号在查询时惰性重新编号
+ - 倒排表惰性删除：片段从行中消失时只计数，失效条目过半时再压缩该倒排表
+ - 片段数组按内容去重：相同内容的行（空行、分隔线、重复的堆栈行等）共享同一数组，
+   以引用计数维护；内容未变的行重新索引时直接跳过
+ 查找文本少于3个字符或包含换行时无法缩小范围，由调用方退回全文扫描。
+ */
+public class TrigramIndex implements TextModelListener {
+    private static final int GRAM = 3; // 片段长度
+
+    // 内存估算用的对象开销（字节，64位JVM压缩指针下的近似值）
+    private static final int GRAM_OVERHEAD = 40; // 倒排表对象 + 数组头
+    private static final int LINE_OVERHEAD = 36; // 行条目对象 + 列表引用
+    private static final int SET_OVERHEAD = 48;  // 共享片段数组的数组头 + 池中条目
+    private static final long[] NO_GRAMS = new long[0]; // 不足3个字符的行共用，不入池
+
+    private final TextModel textModel;
+    private final List<LineEntry> lines = new ArrayList<>();     // 按行号排列的行条目
+    private final GramMap postings = new GramMap();            // 片段 → 倒排表
+    private final GramSetPool pool = new GramSetPool();        // 去重后的行片段数组
+    private int numbered = 0;       // lines[0, numbered)的行号有效
+    private long postingCount = 0;  // 有效的片段-行对应数
+    private int stamp = 0;          // 压缩去重用的标记值
+
+    //行条目：行号与该行包含的片段（去重、升序）
+    private static final class LineEntry {
+        int line;
+        long[] grams = NO_GRAMS; // 取自pool的共享数组
+        boolean alive = true;
+        int mark; // 压缩时的去重标记
+    }
+
+    //倒排表：包含某片段的行条目，可能含失效或重复条目
+    private static final class Postings {
+        LineEntry[] entries = new LineEntry[4];
+        int size;
+        int stale; // 失效条目数（上界）
+
+        void add(LineEntry entry) {
+            if (size == entries.length) entries = Arrays.copyOf(entries, size * 2);
+            entries[size++] = entry;
+        }
+    }
+
+    //构造函数：为模型当前内容建立索引并注册为监听器
+    public TrigramIndex(TextModel model) {
+        this.textModel = model;
+        linesReplaced(model, 0, 0, model.getTotalLines());
+        model.addTextModelListener(this);
+    }
+
+    //停止跟踪模型编辑并释放索引
+    public synchronized void close() {
+        textModel.removeTextModelListener(this);
+        lines.clear();
+        postings.clear();
+        pool.clear();
+        postingCount = 0;
+        numbered = 0;
+    }
+
+    /*
+     增量更新：原位复用两者共有的行条目（只处理片段差异），多出的旧行条目标记失效，
+     多出的新行插入新条目。行数变化时，受影响位置之后的行号标记为失效。
+     */
+    @Override
+    public synchronized void linesReplaced(TextModel model, int firstLine, int removedLines, int insertedLines) {
+        int common = Math.min(removedLines, insertedLines);
+        for (int i = 0; i < common; i++) {
+            reindex(lines.get(firstLine + i), gramsOf(model.getLine(firstLine + i)));
+        }
+        if (removedLines > insertedLines) {
+            List<LineEntry> removed = lines.subList(firstLine + common, firstLine + removedLines);
+            for (LineEntry entry : removed) {
+                entry.alive = false; // 先标记失效，压缩倒排表时不再保留该条目
+                reindex(entry, NO_GRAMS);
+            }
+            removed.clear();
+        } else if (insertedLines > removedLines) {
+            List<LineEntry> added = new ArrayList<>(insertedLines - common);
+            for (int i = common; i < insertedLines; i++) {
+                LineEntry entry = new LineEntry();
+                reindex(entry, gramsOf(model.getLine(firstLine + i)));
+                added.add(entry);
+            }
+            lines.addAll(firstLine + common, added);
+        }
+        if (removedLines != insertedLines) {
+            numbered = Math.min(numbered, firstLine + common);
+        }
+    }
+
+    /*
+     候选行：包含查找文本全部片段的行号（升序）。
+     取最短的倒排表，逐条检查该行的片段数组是否包含查询的全部片段。
+     查找文本少于3个字符时返回null，表示无法缩小范围。
+     */
+    public synchronized int[] candidateLines(String searchText) {
+        if (searchText.length() < GRAM) return null;
+        long[] grams = gramsOf(searchText);
+        Postings shortest = null;
+        for (long gram : grams) {
+            Postings p = postings.get(gram);
+            if (p == null) return new int[0]; // 有片段从未出现
+            if (shortest == null || p.size < shortest.size) shortest = p;
+        }
+
+        renumber();
+        int[] result = new int[shortest.size];
+        int count = 0;
+        for (int i = 0; i < shortest.size; i++) {
+            LineEntry entry = shortest.entries[i];
+            if (entry.alive && containsAll(entry.grams, grams)) {
+                result[count++] = entry.line;
+            }
+        }
+        Arrays.sort(result, 0, count);
+        int unique = 0; // 倒排表可能含重复条目
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || result[i] != result[unique - 1]) result[unique++] = result[i];
+        }
+        return Arrays.copyOf(result, unique);
+    }
+
+    //已索引的行数
+    public synchronized int getIndexedLines() {
+        return lines.size();
+    }
+
+    //不同片段数
+    public synchronized int getGramCount() {
+        return postings.size();
+    }
+
+    //有效的片段-行对应数
+    public synchronized long getPostingCount() {
+        return postingCount;
+    }
+
+    //不同的行片段数组数（内容相同的行只计一次）
+    public synchronized int getDistinctLineSets() {
+        return pool.size;
+    }
+
+    //行片段数组共享节省的内存估算值（字节）
+    public synchronized long getSharedBytesSaved() {
+        return pool.savedBytes;
+    }
+
+    //索引占用内存的估算值（字节），含倒排表中未压缩的失效条目
+    public synchronized long estimateMemoryBytes() {
+        long slots = 0;
+        for (Postings p : postings.values) {
+            if (p != null) slots += p.entries.length;
+        }
+        return (long) postings.keys.length * 12 // 散列表槽位（键 + 引用）
+                + (long) postings.size() * GRAM_OVERHEAD
+                + slots * 4            // 倒排表中的引用
+                + pool.usedBytes + (long) pool.table.length * 4 // 去重后的片段数组
+                + (long) lines.size() * LINE_OVERHEAD;
+    }
+
+    //把行条目按当前位置重新编号（只处理失效部分）
+    private void renumber() {
+        for (int i = numbered; i < lines.size(); i++) {
+            lines.get(i).line = i;
+        }
+        numbered = lines.size();
+    }
+
+    /*
+     把行条目的片段换成newGrams：先取池中相同内容的共享数组，与原数组相同时直接返回；
+     否则按有序数组求差，只登记新增片段、只为消失片段计数。
+     条目先换上新数组再处理消失的片段，压缩倒排表时该条目已不含这些片段，不会被保留
+     */
+    private void reindex(LineEntry entry, long[] newGrams) {
+        long[] old = entry.grams;
+        newGrams = pool.acquire(newGrams);
+        if (newGrams == old) {
+            pool.release(old); // 内容未变：归还多取的一次引用
+            return;
+        }
+        pool.release(old);
+        entry.grams = newGrams;
+        int i = 0, j = 0;
+        while (i < old.length || j < newGrams.length) {
+            if (j == newGrams.length || (i < old.length && old[i] < newGrams[j])) {
+                retire(old[i++]);
+            } else if (i == old.length || newGrams[j] < old[i]) {
+                postings.getOrCreate(newGrams[j++]).add(entry);
+            } else {
+                i++;
+                j++;
+            }
+        }
+        postingCount += newGrams.length - old.length;
+    }
+
+    //片段从某行消失：计为失效，失效过半时压缩倒排表（全部失效则移除）
+    private void retire(long gram) {
+        Postings p = postings.get(gram);
+        if (++p.stale * 2 < p.size) return;
+        int s = ++stamp;
+        int kept = 0;
+        for (int k = 0; k < p.size; k++) {
+            LineEntry e = p.entries[k];
+            if (e.alive && e.mark != s && Arrays.binarySearch(e.grams, gram) >= 0) {
+                e.mark = s;
+                p.entries[kept++] = e;
+            }
+        }
+        if (kept == 0) {
+            postings.remove(gram);
+            return;
+        }
+        Arrays.fill(p.entries, kept, p.size, null);
+        p.size = kept;
+        p.stale = 0;
+        if (p.entries.length > 4 && kept < p.entries.length / 4) {
+            p.entries = Arrays.copyOf(p.entries, Math.max(4, kept * 2));
+        }
+    }
+
+    //片段 → 倒排表的开放寻址散列表（键为打包后的long，避免装箱）
+    private static final class GramMap {
+        long[] keys = new long[16];
+        Postings[] values = new Postings[16]; // null表示空槽
+        int size;
+
+        Postings get(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            return null;
+        }
+
+        Postings getOrCreate(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            Postings p = new Postings();
+            keys[i] = key;
+            values[i] = p;
+            if (++size * 2 > keys.length) grow();
+            return p;
+        }
+
+        //删除后把同一探测链上的后续条目前移，保持查找无需墓碑
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (values[i] != null && keys[i] != key) i = (i + 1) & mask;
+            if (values[i] == null) return;
+            values[i] = null;
+            size--;
+            for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+                int home = hash(keys[j]) & mask;
+                // home不在(i, j]循环区间内时，j处条目可以移到空出的i
+                if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    values[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            keys = new long[16];
+            values = new Postings[16];
+            size = 0;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Postings[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Postings[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int k = 0; k < oldKeys.length; k++) {
+                if (oldValues[k] == null) continue;
+                int i = hash(oldKeys[k]) & mask;
+                while (values[i] != null) i = (i + 1) & mask;
+                keys[i] = oldKeys[k];
+                values[i] = oldValues[k];
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /*
+     片段数组池：按内容去重的开放寻址散列表，每个不同的数组只保存一份并记录引用计数，
+     计数归零时移除
+     */
+    private static final class GramSetPool {
+        //池中条目：共享数组、其散列值与引用计数
+        private static final class Shared {
+            final long[] grams;
+            final int hash;
+            int refs;
+
+            Shared(long[] grams, int hash) {
+                this.grams = grams;
+                this.hash = hash;
+            }
+        }
+
+        Shared[] table = new Shared[16];
+        int size;
+        long usedBytes;  // 池中各数组的估算大小之和
+        long savedBytes; // 共享节省的估算大小：每多一次引用节省一个数组
+
+        //取得与grams内容相同的共享数组（无则以grams入池），引用计数加一
+        long[] acquire(long[] grams) {
+            if (grams.length == 0) return NO_GRAMS;
+            int hash = Arrays.hashCode(grams);
+            int mask = table.length - 1;
+            int i = mix(hash) & mask;
+            for (; table[i] != null; i = (i + 1) & mask) {
+                Shared e = table[i];
+                if (e.hash == hash && Arrays.equals(e.grams, grams)) {
+                    e.refs++;
+                    savedBytes += bytesOf(grams);
+                    return e.grams;
+                }
+            }
+            Shared e = new Shared(grams, hash);
+            e.refs = 1;
+            table[i] = e;
+            usedBytes += bytesOf(grams);
+            if (++size * 2 > table.length) grow();
+            return grams;
+        }
+
+        //归还一次引用：计数归零时从池中移除（删除后前移同一探测链上的条目）
+        void release(long[] grams) {
+            if (grams.length == 0) return;
+            int mask = table.length - 1;
+            int i = mix(Arrays.hashCode(grams)) & mask;
+            while (table[i].grams != grams) i = (i + 1) & mask;
+            if (--table[i].refs > 0) {
+                savedBytes -= bytesOf(grams);
+                return;
+            }
+            usedBytes -= bytesOf(grams);
+            table[i] = null;
+            size--;
+            for (int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+                int home = mix(table[j].hash) & mask;
+                if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                    table[i] = table[j];
+                    table[j] = null;
+                    i = j;
+                }
+            }
+        }
+
+        void clear() {
+            table = new Shared[16];
+            size = 0;
+            usedBytes = 0;
+            savedBytes = 0;
+        }
+
+        private void grow() {
+            Shared[] old = table;
+            table = new Shared[old.length * 2];
+            int mask = table.length - 1;
+            for (Shared e : old) {
+                if (e == null) continue;
+                int i = mix(e.hash) & mask;
+                while (table[i] != null) i = (i + 1) & mask;
+                table[i] = e;
+            }
+        }
+
+        private static long bytesOf(long[] grams) {
+            return SET_OVERHEAD + 8L * grams.length;
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    private static boolean containsAll(long[] sorted, long[] grams) {
+        for (long gram : grams) {
+            if (Arrays.binarySearch(sorted, gram) < 0) return false;
+        }
+        return true;
+    }
+
+    //文本中出现的片段（去重、升序）；每个片段把3个折叠后的字符打包为一个long
+    private static long[] gramsOf(String text) {
+        int n = text.length() - GRAM + 1;
+        if (n <= 0) return NO_GRAMS;
+        long[] grams = new long[n];
+        long c0 = fold(text.charAt(0));
+        long c1 = fold(text.charAt(1));
+        for (int i = 0; i < n; i++) {
+            long c2 = fold(text.charAt(i + 2));
+            grams[i] = c0 << 32 | c1 << 16 | c2;
+            c0 = c1;
+            c1 = c2;
+        }
+        Arrays.sort(grams);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) grams[unique++] = grams[i];
+        }
+        return Arrays.copyOf(grams, unique);
+    }
+
+    //与 HorspoolSearch 相同的大小写折叠
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
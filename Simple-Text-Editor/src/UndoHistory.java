@@ -0,0 +1,164 @@
+import java.util.ArrayDeque;
+
+/*
+ 撤销/重做历史：每条记录保存一次变更前后的存储快照与变更区间。
+ - 存储为持久化树（片段表/绳索树），前后快照共享未改动的节点，
+   一条记录实际占用的内存约为变更区间的大小，而不是整份文档
+ - 撤销/重做只需换回快照根节点，O(1)；视图所需的文本只取变更区间
+ - 条数与估算字节数均有上限，超出时从最旧的记录开始丢弃（至少保留最近一条）
+ - 连续的单字符输入/删除合并为一条记录，换行或光标跳开时断开
+ */
+public class UndoHistory {
+    // 每条记录的固定开销估算：快照对象、路径上复制的树节点等
+    private static final long ENTRY_OVERHEAD = 512;
+
+    private final int maxEntries;  // 最多保留的撤销条数
+    private final long maxBytes;   // 撤销+重做记录的估算内存上限
+    private final ArrayDeque<Edit> undoStack = new ArrayDeque<>(); // 栈顶为最近一次变更
+    private final ArrayDeque<Edit> redoStack = new ArrayDeque<>(); // 栈顶为最近一次撤销
+    private long bytes = 0;        // 当前估算占用
+    private boolean sealed = true; // 为true时下一次输入不与栈顶合并
+
+    public UndoHistory(int maxEntries, long maxBytes) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = maxBytes;
+    }
+
+    /*
+     一次变更：[start, start+removed)的旧文本被替换为长度inserted的新文本。
+     统计值随快照一起保存，撤销/重做时无需重新统计。
+     */
+    static final class Edit {
+        final TextStorage before;      // 变更前的存储快照
+        final long wordsBefore;        // 变更前单词数
+        final int nonBlankBefore;      // 变更前非空白行数
+        TextStorage after;             // 变更后的存储快照
+        long wordsAfter;
+        int nonBlankAfter;
+        int start;                     // 变更区间起点
+        int removed;                   // 旧文本中被替换的长度
+        int inserted;                  // 新文本长度
+        long delta;                    // 实际改动的字符数：各次拼接的删除与插入长度之和
+        final boolean typing;          // 是否为可合并的单字符输入/删除
+
+        Edit(TextStorage before, long wordsBefore, int nonBlankBefore,
+             TextStorage after, long wordsAfter, int nonBlankAfter,
+             int start, int removed, int inserted, long delta, boolean typing) {
+            this.before = before;
+            this.wordsBefore = wordsBefore;
+            this.nonBlankBefore = nonBlankBefore;
+            this.after = after;
+            this.wordsAfter = wordsAfter;
+            this.nonBlankAfter = nonBlankAfter;
+            this.start = start;
+            this.removed = removed;
+            this.inserted = inserted;
+            this.delta = delta;
+            this.typing = typing;
+        }
+
+        /*
+         估算占用：实际改动的新旧文本各两字节/字符，加固定开销。
+         不按[start, start+removed)区间计：一次批量编辑的首尾改动可能相距很远，
+         其间未改动的文本由前后快照共享，不占额外内存
+         */
+        long estimateBytes() {
+            return 2L * delta + ENTRY_OVERHEAD;
+        }
+    }
+
+    /*
+     记录一次新变更：清空重做栈；与栈顶同为输入且区间相接时合并为一条。
+     合并方式与变更跟踪相同：起点取最小值，未触及的尾部取最短者。
+     */
+    void record(Edit edit) {
+        clearRedo();
+        Edit last = undoStack.peekLast();
+        if (edit.typing && !sealed && last != null && last.typing
+                && edit.start <= last.start + last.inserted && edit.start + edit.removed >= last.start) {
+            int lengthBefore = last.before.length();
+            int lengthAfter = edit.after.length();
+            int tail = Math.min(lengthBefore - last.start - last.removed,
+                    lengthAfter - edit.start - edit.inserted);
+            bytes -= last.estimateBytes();
+            last.start = Math.min(last.start, edit.start);
+            last.removed = lengthBefore - tail - last.start;
+            last.inserted = lengthAfter - tail - last.start;
+            last.delta += edit.delta;
+            last.after = edit.after;
+            last.wordsAfter = edit.wordsAfter;
+            last.nonBlankAfter = edit.nonBlankAfter;
+            bytes += last.estimateBytes();
+        } else {
+            undoStack.addLast(edit);
+            bytes += edit.estimateBytes();
+        }
+        sealed = !edit.typing;
+        trim();
+    }
+
+    //下一次输入另起一条记录（如光标跳到别处）
+    void seal() {
+        sealed = true;
+    }
+
+    boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    //取出最近一次变更并移入重做栈
+    Edit undo() {
+        Edit edit = undoStack.pollLast();
+        if (edit != null) {
+            redoStack.addLast(edit);
+            sealed = true;
+        }
+        return edit;
+    }
+
+    //取出最近一次撤销并移回撤销栈
+    Edit redo() {
+        Edit edit = redoStack.pollLast();
+        if (edit != null) {
+            undoStack.addLast(edit);
+            sealed = true;
+        }
+        return edit;
+    }
+
+    //清空全部记录（整体替换内容后旧快照不再适用）
+    void clear() {
+        undoStack.clear();
+        redoStack.clear();
+        bytes = 0;
+        sealed = true;
+    }
+
+    //撤销与重做记录的估算内存占用（字节）
+    public long estimateMemoryBytes() {
+        return bytes;
+    }
+
+    //当前可撤销的条数
+    public int size() {
+        return undoStack.size();
+    }
+
+    private void clearRedo() {
+        for (Edit edit : redoStack) {
+            bytes -= edit.estimateBytes();
+        }
+        redoStack.clear();
+    }
+
+    //超出条数或内存上限时丢弃最旧的撤销记录
+    private void trim() {
+        while (undoStack.size() > 1 && (undoStack.size() > maxEntries || bytes > maxBytes)) {
+            bytes -= undoStack.pollFirst().estimateBytes();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ 批量编辑测试：流式处理与整份读入的输出一致，换行符与末尾换行原样保留，
+ 块边界与超长行不影响替换结果与查找报告的行号。
+ */
+class BatchEditorTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void streamedAndWholeModesKeepLineEndings() throws IOException {
+        String[] inputs = {"abc\r\nxabc\nabc", "abc\r\n\r\nabc abc\n", "", "\n", "abc"};
+        for (String input : inputs) {
+            String expected = FindReplaceServiceTest.naiveReplace(input, "abc", "Z", false, true);
+            assertEquals(expected, run(input, "replace -w \"abc\" \"Z\""), "streamed " + input);
+            //插入空字符串不改变内容，但含按位置的编辑，走整份读入
+            assertEquals(expected, run(input, "replace -w \"abc\" \"Z\"\ninsertString 1 0 \"\""), "whole " + input);
+        }
+    }
+
+    @Test
+    void largeCrlfFileKeepsLineEndingsInWholeMode() throws IOException {
+        //超过映射阈值的\r\n文件不能经换行规整后的映射读入
+        String input = "abc line\r\n".repeat(200_000);
+        String expected = input.replace("abc", "Z");
+        assertEquals(expected, run(input, "replace \"abc\" \"Z\"\ninsertString 1 0 \"\""));
+    }
+
+    @Test
+    void chunkCutsAndHugeLinesDoNotSplitMatches() throws IOException {
+        Random random = new Random(9);
+        StringBuilder sb = new StringBuilder();
+        //多个流式块的短行，之后是一条跨越多个块的超长行，再接短行
+        while (sb.length() < 3 * (1 << 20)) {
+            sb.append(FindReplaceServiceTest.wordyText(random, 80).replace('\n', ' ')).append('\n');
+        }
+        while (sb.length() < 6 * (1 << 20)) {
+            sb.append(FindReplaceServiceTest.wordyText(random, 1000).replace('\n', ' '));
+        }
+        sb.append("\nabc tail\n");
+        String input = sb.toString();
+        String expected = FindReplaceServiceTest.naiveReplace(input, "abc", "<abc>", true, false);
+        assertEquals(expected, run(input, "replace -i \"abc\" \"<abc>\""));
+        assertEquals(expected, run(input, "replace -i \"abc\" \"<abc>\"\ninsertString 1 0 \"\""));
+    }
+
+    @Test
+    void findReportsGlobalLineNumbers() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int line = 0; sb.length() < 3 * (1 << 20); line++) {
+            if (line % 5000 == 0) {
+                sb.append("  needle");
+                expected.add((line + 1) + ":2");
+            }
+            sb.append("filler text line\n");
+        }
+        Path file = write(sb.toString());
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        BatchEditor editor = new BatchEditor(BatchEditor.parseScript(List.of("find \"needle\"")),
+                new PrintStream(report, true, Charset.defaultCharset()));
+        assertTrue(editor.run(file.toString(), dir.resolve("out.txt").toString()));
+        List<String> reported = new ArrayList<>();
+        for (String line : report.toString(Charset.defaultCharset()).split("\n")) {
+            if (line.startsWith(file + ":")) reported.add(line.substring(file.toString().length() + 1));
+        }
+        assertEquals(expected, reported);
+    }
+
+    @Test
+    void columnBlockOperations() throws IOException {
+        String script = """
+                deleteColumnBlock 1 3 1 3
+                fillColumnBlock 2 3 2 4 "*"
+                insertColumn 1 2 1 "|"
+                copyColumnBlock 1 1 0 2 4 0""";
+        assertEquals("a|def\n1| **\nx **\na|", run("abcdef\n12\nxyz", script));
+        assertThrows(IllegalArgumentException.class,
+                () -> BatchEditor.parseScript(List.of("fillColumnBlock 1 2 0 1 \"**\"")));
+        assertThrows(IllegalArgumentException.class,
+                () -> BatchEditor.parseScript(List.of("insertColumn 1 2 \"x\"")));
+    }
+
+    @Test
+    void outOfRangePositionsFailWithTheOperationNumber() throws IOException {
+        String[][] cases = {
+                {"insertString 999 0 \"X\"", "line 999 out of range 1..3"},
+                {"deleteTextBlock 1 1 9 0", "line 9 out of range 1..3"},
+                {"insertString 2 50 \"X\"", "column index out of bounds"},
+                {"moveLineBlock 1 2 5", "line 5 out of range 1..4"},
+                {"deleteColumnBlock 2 4 0 1", "line 4 out of range 1..3"},
+        };
+        for (String[] c : cases) {
+            Path file = write("a\nb\nc");
+            Path out = dir.resolve("out.txt");
+            ByteArrayOutputStream report = new ByteArrayOutputStream();
+            BatchEditor editor = new BatchEditor(BatchEditor.parseScript(List.of("# header", "replace \"a\" \"b\"", c[0])),
+                    new PrintStream(report, true, Charset.defaultCharset()));
+            assertFalse(editor.run(file.toString(), out.toString()), c[0]);
+            String message = report.toString(Charset.defaultCharset());
+            assertTrue(message.contains("operation 2 (script line 3: " + c[0] + "): " + c[1]), message);
+            assertFalse(Files.exists(out), c[0]);
+            assertEquals(List.of(file.getFileName()), listDir(), "temporary files left behind");
+        }
+    }
+
+    @Test
+    void explicitCharsetIsUsedForReadingAndWriting() throws IOException {
+        String input = "caf\u00e9 abc\r\n\u00fc abc\n";
+        String expected = "caf\u00e9 Z\r\n\u00fc Z\n";
+        for (String script : new String[]{"replace \"abc\" \"Z\"", "replace \"abc\" \"Z\"\ninsertString 1 0 \"\""}) {
+            Path file = dir.resolve("latin1.txt");
+            Files.writeString(file, input, StandardCharsets.ISO_8859_1);
+            BatchEditor editor = new BatchEditor(BatchEditor.parseScript(List.of(script.split("\n"))),
+                    new PrintStream(new ByteArrayOutputStream(), true), StandardCharsets.ISO_8859_1);
+            assertTrue(editor.run(file.toString(), file.toString()), script); // 原地修改
+            assertEquals(expected, Files.readString(file, StandardCharsets.ISO_8859_1), script);
+        }
+    }
+
+    private List<Path> listDir() throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.map(Path::getFileName).toList();
+        }
+    }
+
+    //写入输入文件，按脚本处理到另一个文件，返回输出内容
+    private String run(String input, String script) throws IOException {
+        Path file = write(input);
+        Path out = dir.resolve("out.txt");
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        BatchEditor editor = new BatchEditor(BatchEditor.parseScript(List.of(script.split("\n"))),
+                new PrintStream(report, true, Charset.defaultCharset()));
+        assertTrue(editor.run(file.toString(), out.toString()), report::toString);
+        return Files.readString(out, Charset.defaultCharset());
+    }
+
+    private Path write(String text) throws IOException {
+        Path file = dir.resolve("in.txt");
+        Files.writeString(file, text, Charset.defaultCharset());
+        return file;
+    }
+}
@@ -0,0 +1,111 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/*
+ 列块测试：经BlockMoveService执行的移动、复制、删除、填充与插入列，与逐行StringBuilder的朴素模型比对，
+ 包括列超出行长、行超出文档以及源区与目标区重叠的情况。
+ */
+class ColumnBlockServiceTest {
+
+    @Test
+    void columnOperationsMatchNaiveRows() {
+        Random random = new Random(31);
+        TextModel model = new TextModel();
+        BlockMoveService service = new BlockMoveService(model);
+        List<StringBuilder> rows = new ArrayList<>();
+        StringBuilder initial = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            if (i > 0) initial.append('\n');
+            initial.append(TextStorageTest.randomText(random, random.nextInt(30)).replace('\n', ' '));
+        }
+        for (String line : initial.toString().split("\n", -1)) rows.add(new StringBuilder(line));
+        model.setContentFromString(initial.toString());
+
+        for (int step = 0; step < 400; step++) {
+            int startLine = random.nextInt(rows.size() + 3);
+            int endLine = startLine + random.nextInt(6);
+            int startCol = random.nextInt(25);
+            int endCol = startCol + random.nextInt(10);
+            switch (random.nextInt(5)) {
+                case 0, 1 -> {
+                    boolean move = random.nextBoolean();
+                    int targetLine = random.nextInt(rows.size() + 3);
+                    int targetCol = random.nextInt(30);
+                    if (move) {
+                        service.moveColumnBlock(startLine, endLine, startCol, endCol, targetLine, targetCol);
+                    } else {
+                        service.copyColumnBlock(startLine, endLine, startCol, endCol, targetLine, targetCol);
+                    }
+                    naiveTransfer(rows, startLine, endLine, startCol, endCol, targetLine, targetCol, move);
+                }
+                case 2 -> {
+                    service.deleteColumnBlock(startLine, endLine, startCol, endCol);
+                    for (int line = startLine; line <= endLine && line < rows.size(); line++) {
+                        StringBuilder r = rows.get(line);
+                        if (startCol < r.length()) r.delete(startCol, Math.min(endCol, r.length()));
+                    }
+                }
+                case 3 -> {
+                    char fill = (char) ('a' + random.nextInt(26));
+                    service.fillColumnBlock(startLine, endLine, startCol, endCol, fill);
+                    for (int line = startLine; line <= endLine && line < rows.size(); line++) {
+                        StringBuilder r = rows.get(line);
+                        while (r.length() < endCol) r.append(' ');
+                        for (int c = startCol; c < endCol; c++) r.setCharAt(c, fill);
+                    }
+                }
+                default -> {
+                    String text = "<" + step + ">";
+                    service.insertColumn(startLine, endLine, startCol, text);
+                    for (int line = startLine; line <= endLine && line < rows.size(); line++) {
+                        StringBuilder r = rows.get(line);
+                        while (r.length() < startCol) r.append(' ');
+                        r.insert(startCol, text);
+                    }
+                }
+            }
+            assertEquals(String.join("\n", rows), model.getContentAsString(), "step " + step);
+        }
+    }
+
+    @Test
+    void rejectsInvalidBlocks() {
+        TextModel model = new TextModel();
+        BlockMoveService service = new BlockMoveService(model);
+        model.setContentFromString("abc\ndef");
+        assertThrows(IllegalArgumentException.class, () -> service.copyColumnBlock(1, 0, 0, 1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> service.copyColumnBlock(0, 1, 0, 1, -1, 0));
+        assertThrows(IllegalArgumentException.class, () -> service.deleteColumnBlock(0, 1, 2, 1));
+        assertThrows(IllegalArgumentException.class, () -> service.fillColumnBlock(-1, 1, 0, 1, 'x'));
+        assertThrows(IllegalArgumentException.class, () -> service.insertColumn(0, 1, -1, "x"));
+        assertEquals("abc\ndef", model.getContentAsString());
+    }
+
+    //朴素移动/复制：先取出各行列区，移动时从源行删除，再在目标行补齐后插入（目标行超出文档时补空行）
+    private static void naiveTransfer(List<StringBuilder> rows, int startLine, int endLine, int startCol, int endCol,
+                                      int targetLine, int targetCol, boolean move) {
+        List<String> block = new ArrayList<>();
+        for (int line = startLine; line <= endLine; line++) {
+            StringBuilder r = line < rows.size() ? rows.get(line) : new StringBuilder();
+            block.add(startCol < r.length() ? r.substring(startCol, Math.min(endCol, r.length())) : "");
+        }
+        if (move) {
+            for (int line = startLine; line <= endLine && line < rows.size(); line++) {
+                StringBuilder r = rows.get(line);
+                if (startCol < r.length()) r.delete(startCol, Math.min(endCol, r.length()));
+            }
+        }
+        for (int i = 0; i < block.size(); i++) {
+            while (rows.size() <= targetLine + i) rows.add(new StringBuilder());
+            StringBuilder r = rows.get(targetLine + i);
+            while (r.length() < targetCol) r.append(' ');
+            r.insert(targetCol, block.get(i));
+        }
+    }
+}
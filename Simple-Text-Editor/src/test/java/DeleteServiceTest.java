@@ -0,0 +1,65 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/*
+ 删除服务测试：合法的行列区间与按行拆分的朴素模型比对；越界或颠倒的位置被拒绝且不改动内容。
+ */
+class DeleteServiceTest {
+
+    @Test
+    void deletesMatchNaiveModel() {
+        Random random = new Random(21);
+        TextModel model = new TextModel();
+        DeleteService service = new DeleteService(model);
+        StringBuilder expected = new StringBuilder(TextStorageTest.randomText(random, 20_000));
+        model.setContentFromString(expected.toString());
+        for (int step = 0; step < 500; step++) {
+            String[] lines = expected.toString().split("\n", -1);
+            int startLine = random.nextInt(lines.length);
+            int startCol = random.nextInt(lines[startLine].length() + 1);
+            int start = offsetOf(lines, startLine, startCol);
+            if (random.nextBoolean()) {
+                int length = random.nextInt(lines[startLine].length() - startCol + 1);
+                service.deleteChars(startLine, startCol, length);
+                expected.delete(start, start + length);
+            } else {
+                int endLine = Math.min(lines.length - 1, startLine + random.nextInt(3));
+                int endCol = endLine == startLine
+                        ? startCol + random.nextInt(lines[endLine].length() - startCol + 1)
+                        : random.nextInt(lines[endLine].length() + 1);
+                service.deleteTextBlock(startLine, startCol, endLine, endCol);
+                expected.delete(start, offsetOf(lines, endLine, endCol));
+            }
+            assertEquals(expected.toString(), model.getContentAsString(), "step " + step);
+        }
+    }
+
+    @Test
+    void rejectsPositionsOutsideTheText() {
+        TextModel model = new TextModel();
+        DeleteService service = new DeleteService(model);
+        model.setContentFromString("a\nb\nc");
+        assertThrows(IllegalArgumentException.class, () -> service.deleteTextBlock(0, 1, 999, 0));
+        assertThrows(IllegalArgumentException.class, () -> service.deleteTextBlock(-1, 0, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> service.deleteTextBlock(0, 2, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> service.deleteTextBlock(2, 0, 0, 1)); // 结束在起始之前
+        assertThrows(IllegalArgumentException.class, () -> service.deleteTextBlock(1, 1, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> service.deleteChars(0, 0, 5));        // 越过行尾
+        assertThrows(IllegalArgumentException.class, () -> service.deleteChars(3, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> service.deleteChars(0, 1, -1));
+        assertEquals("a\nb\nc", model.getContentAsString());
+
+        service.deleteTextBlock(0, 1, 2, 0); // 行尾与行首都是合法位置
+        assertEquals("ac", model.getContentAsString());
+    }
+
+    private static int offsetOf(String[] lines, int line, int col) {
+        int offset = 0;
+        for (int i = 0; i < line; i++) offset += lines[i].length() + 1;
+        return offset + col;
+    }
+}
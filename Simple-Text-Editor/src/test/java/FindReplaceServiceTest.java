@@ -0,0 +1,306 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/*
+ 查找替换测试：各查找路径（顺序、并行、索引、跨行）与逐字符的朴素查找比对，
+ 各替换路径与朴素拼接及java.util.regex的替换结果比对，并检查整组替换只占一条撤销记录。
+ */
+class FindReplaceServiceTest {
+    private static final String[] QUERIES = {"ab", "abc", "Ab", "_x", "中文", "a b", "cab"};
+
+    @Test
+    void findTextMatchesNaiveSearch() {
+        Random random = new Random(1);
+        String text = wordyText(random, 20_000);
+        TextModel model = new TextModel();
+        model.setContentFromString(text);
+        FindReplaceService service = new FindReplaceService(model);
+        for (String query : QUERIES) {
+            for (int options = 0; options < 4; options++) {
+                boolean ignoreCase = (options & 1) != 0;
+                boolean wholeWord = (options & 2) != 0;
+                assertPositions(naiveFind(text, query, ignoreCase, wholeWord),
+                        service.findText(query, ignoreCase, wholeWord), query + " " + options);
+            }
+        }
+    }
+
+    @Test
+    void parallelFindMatchesNaiveSearch() {
+        Random random = new Random(2);
+        String text = wordyText(random, (1 << 20) + 300_000); // 超过并行阈值
+        TextModel model = new TextModel();
+        model.setContentFromString(text);
+        FindReplaceService service = new FindReplaceService(model);
+        assertPositions(naiveFind(text, "abc", false, false), service.findText("abc", false, false), "abc");
+        assertPositions(naiveFind(text, "ab", true, true), service.findText("ab", true, true), "ab");
+    }
+
+    @Test
+    void indexedFindFollowsEdits() {
+        Random random = new Random(3);
+        StringBuilder text = new StringBuilder(wordyText(random, 10_000));
+        TextModel model = new TextModel();
+        model.setContentFromString(text.toString());
+        FindReplaceService service = new FindReplaceService(model);
+        service.setIndexEnabled(true);
+        for (int step = 0; step < 300; step++) {
+            int offset = random.nextInt(text.length() + 1);
+            if (random.nextBoolean() && offset < text.length()) {
+                int n = Math.min(text.length() - offset, random.nextInt(20) + 1);
+                model.deleteText(offset, n);
+                text.delete(offset, offset + n);
+            } else {
+                String insert = wordyText(random, random.nextInt(30) + 1);
+                model.insertText(offset, insert);
+                text.insert(offset, insert);
+            }
+            if (step % 30 == 0) {
+                for (String query : QUERIES) {
+                    assertPositions(naiveFind(text.toString(), query, true, false),
+                            service.findText(query, true, false), query);
+                }
+            }
+        }
+    }
+
+    @Test
+    void replaceAllMatchesNaiveAndUndoesInOneStep() {
+        Random random = new Random(4);
+        for (int density = 0; density < 2; density++) {
+            //稀疏匹配（各自拼接）与密集匹配（合并拼接）两种情形
+            String text = density == 0 ? wordyText(random, 300_000).replace("abc", "xyz")
+                    + "\nabc tail abc" : wordyText(random, 300_000);
+            TextModel model = new TextModel();
+            model.setContentFromString(text);
+            model.enableUndo(100, Long.MAX_VALUE);
+            FindReplaceService service = new FindReplaceService(model);
+            for (int options = 0; options < 4; options++) {
+                boolean ignoreCase = (options & 1) != 0;
+                boolean wholeWord = (options & 2) != 0;
+                String before = model.getContentAsString();
+                List<int[]> matches = naiveFind(before, "abc", ignoreCase, wholeWord);
+                int count = service.replaceAll("abc", "[*]", ignoreCase, wholeWord);
+                assertEquals(matches.size(), count);
+                assertEquals(naiveReplace(before, "abc", "[*]", ignoreCase, wholeWord), model.getContentAsString());
+                TextModelTest.assertStats(model.getContentAsString(), model);
+                if (count > 0) {
+                    model.undo();
+                    assertEquals(before, model.getContentAsString());
+                    model.redo();
+                }
+            }
+        }
+    }
+
+    @Test
+    void replaceRegexMatchesLineByLineReplaceAll() {
+        Random random = new Random(5);
+        String text = wordyText(random, 50_000);
+        String[][] cases = {
+                {"a(b+)c", "<$1>"},
+                {"^(\\w+)", "$1$1"},
+                {"(?<w>[a-z]{2})$", "${w}!"},
+                {"x*", "-"},
+                {"\\s+", "\\$"},
+        };
+        for (String[] c : cases) {
+            TextModel model = new TextModel();
+            model.setContentFromString(text);
+            FindReplaceService service = new FindReplaceService(model);
+            Pattern pattern = Pattern.compile(c[0]);
+            StringBuilder expected = new StringBuilder();
+            int count = 0;
+            for (String line : text.split("\n", -1)) {
+                Matcher m = pattern.matcher(line);
+                while (m.find()) count++;
+                expected.append(pattern.matcher(line).replaceAll(c[1])).append('\n');
+            }
+            expected.setLength(expected.length() - 1);
+            assertEquals(count, service.replaceRegex(c[0], c[1], false), c[0]);
+            assertEquals(expected.toString(), model.getContentAsString(), c[0]);
+        }
+    }
+
+    @Test
+    void replaceRegexRejectsMissingGroupsWithoutEditing() {
+        TextModel model = new TextModel();
+        model.setContentFromString("foo bar\nfoo");
+        FindReplaceService service = new FindReplaceService(model);
+        assertThrows(IllegalArgumentException.class, () -> service.replaceRegex("(foo)", "$2", false));
+        assertThrows(IllegalArgumentException.class, () -> service.replaceRegex("foo", "$1", false));
+        assertThrows(IllegalArgumentException.class, () -> service.replaceRegex("(foo)", "${name}", false));
+        assertThrows(IllegalArgumentException.class, () -> service.replaceRegex("(foo)", "x\\", false));
+        assertEquals("foo bar\nfoo", model.getContentAsString());
+
+        //组号只读取到不超过组数的位数，与Matcher.replaceAll一致
+        assertEquals(2, service.replaceRegex("(foo)", "$10", false));
+        assertEquals("foo0 bar\nfoo0", model.getContentAsString());
+    }
+
+    @Test
+    void rangesSpanLinesAndMatchWholeTextReplace() {
+        Random random = new Random(6);
+        String text = wordyText(random, 50_000);
+        TextModel model = new TextModel();
+        model.setContentFromString(text);
+        FindReplaceService service = new FindReplaceService(model);
+
+        //文本查找可包含换行
+        List<TextRange> ranges = new ArrayList<>();
+        service.rangeMatches("b\na", false, false, false).forEachRemaining(ranges::add);
+        List<int[]> naive = naiveFind(text, "b\na", false, false);
+        assertEquals(naive.size(), ranges.size());
+        for (int i = 0; i < naive.size(); i++) {
+            assertEquals(naive.get(i)[0], ranges.get(i).getStartLine());
+            assertEquals(naive.get(i)[1], ranges.get(i).getStartColumn());
+            assertEquals(naive.get(i)[0] + 1, ranges.get(i).getEndLine());
+            assertEquals(1, ranges.get(i).getEndColumn());
+        }
+
+        //正则在全文上匹配（多行模式），替换结果与整串replaceAll一致
+        Pattern pattern = Pattern.compile("(\\w)\\n(\\w)", Pattern.MULTILINE);
+        String expected = pattern.matcher(text).replaceAll("$2+$1");
+        long count = pattern.matcher(text).results().count();
+        assertEquals(count, service.replaceRanges("(\\w)\\n(\\w)", "$2+$1", true, false, false));
+        assertEquals(expected, model.getContentAsString());
+    }
+
+    @Test
+    void wholeWordAppliesToRegexSearches() {
+        Random random = new Random(7);
+        String text = wordyText(random, 30_000);
+        TextModel model = new TextModel();
+        model.setContentFromString(text);
+        FindReplaceService service = new FindReplaceService(model);
+        for (String query : QUERIES) {
+            for (boolean ignoreCase : new boolean[]{false, true}) {
+                List<int[]> naive = naiveFind(text, query, ignoreCase, true);
+                //按行正则与文本查找一致
+                assertPositions(naive, service.findRegex(Pattern.quote(query), ignoreCase, true), query);
+                //跨行正则：未闭合的\Q同样生效
+                List<TextRange> ranges = service.findRanges("\\Q" + query, true, ignoreCase, true);
+                assertEquals(naive.size(), ranges.size(), query);
+                for (int i = 0; i < naive.size(); i++) {
+                    assertArrayEquals(naive.get(i), new int[]{ranges.get(i).getStartLine(), ranges.get(i).getStartColumn()});
+                }
+            }
+        }
+
+        //分支可回溯到满足单词边界的较长选项，组号不受包裹影响
+        model.setContentFromString("abc ab xab");
+        assertEquals(2, service.replaceRanges("(ab|abc)", "<$1>", true, false, true));
+        assertEquals("<abc> <ab> xab", model.getContentAsString());
+        model.setContentFromString("abc ab xab");
+        assertEquals(2, service.replaceRegex("(ab|abc)", "<$1>", false, true));
+        assertEquals("<abc> <ab> xab", model.getContentAsString());
+
+        //跨行正则替换与文本全部替换一致
+        model.setContentFromString(text);
+        TextModel reference = new TextModel();
+        reference.setContentFromString(text);
+        int expected = new FindReplaceService(reference).replaceAll("ab", "[X]", true, true);
+        assertEquals(expected, service.replaceRanges("ab", "[X]", true, true, true));
+        assertEquals(reference.getContentAsString(), model.getContentAsString());
+
+        //(?x)下以注释结尾的表达式无法包裹
+        assertThrows(IllegalArgumentException.class, () -> service.findRanges("(?x)ab#c", true, false, true));
+    }
+
+    @Test
+    void replaceRangesRejectsMissingGroupsWithoutEditing() {
+        TextModel model = new TextModel();
+        model.setContentFromString("foo\nfoo");
+        FindReplaceService service = new FindReplaceService(model);
+        assertThrows(IllegalArgumentException.class, () -> service.replaceRanges("(foo)", "$2", true, false, false));
+        assertThrows(IllegalArgumentException.class, () -> service.replaceRanges("(foo)$", "$3", true, false, true));
+        assertEquals("foo\nfoo", model.getContentAsString());
+    }
+
+    //朴素查找：逐个起点比较，匹配互不重叠；返回[行, 列]
+    static List<int[]> naiveFind(String text, String query, boolean ignoreCase, boolean wholeWord) {
+        List<int[]> result = new ArrayList<>();
+        int line = 0;
+        int lineStart = 0;
+        int scanned = 0;
+        for (int start : naiveStarts(text, query, ignoreCase, wholeWord)) {
+            for (; scanned < start; scanned++) {
+                if (text.charAt(scanned) == '\n') {
+                    line++;
+                    lineStart = scanned + 1;
+                }
+            }
+            result.add(new int[]{line, start - lineStart});
+        }
+        return result;
+    }
+
+    static List<Integer> naiveStarts(String text, String query, boolean ignoreCase, boolean wholeWord) {
+        List<Integer> starts = new ArrayList<>();
+        int m = query.length();
+        int s = 0;
+        while (s + m <= text.length()) {
+            boolean match = true;
+            for (int j = 0; j < m && match; j++) {
+                match = fold(text.charAt(s + j), ignoreCase) == fold(query.charAt(j), ignoreCase);
+            }
+            if (match && wholeWord) {
+                match = (s == 0 || !isWordChar(text.charAt(s - 1)))
+                        && (s + m == text.length() || !isWordChar(text.charAt(s + m)));
+            }
+            if (match) {
+                starts.add(s);
+                s += m;
+            } else {
+                s++;
+            }
+        }
+        return starts;
+    }
+
+    static String naiveReplace(String text, String query, String replacement, boolean ignoreCase, boolean wholeWord) {
+        StringBuilder sb = new StringBuilder();
+        int last = 0;
+        for (int start : naiveStarts(text, query, ignoreCase, wholeWord)) {
+            sb.append(text, last, start).append(replacement);
+            last = start + query.length();
+        }
+        return sb.append(text, last, text.length()).toString();
+    }
+
+    private static char fold(char c, boolean ignoreCase) {
+        return ignoreCase ? Character.toLowerCase(Character.toUpperCase(c)) : c;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static void assertPositions(List<int[]> expected, List<TextPosition> actual, String message) {
+        assertEquals(expected.size(), actual.size(), message);
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), new int[]{actual.get(i).getLine(), actual.get(i).getColumn()},
+                    message + " #" + i);
+        }
+    }
+
+    //由短单词、大小写变体、下划线、中文与换行组成的文本，匹配密集且有单词边界
+    static String wordyText(Random random, int length) {
+        String[] words = {"ab", "abc", "ABC", "Abc", "cab", "_x", "x_abc", "中文", "b", "a", "abcabc", "é"};
+        String[] gaps = {" ", " ", "\n", "\t", ",", ""};
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            sb.append(words[random.nextInt(words.length)]).append(gaps[random.nextInt(gaps.length)]);
+        }
+        return sb.toString();
+    }
+}
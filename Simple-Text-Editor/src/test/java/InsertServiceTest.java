@@ -0,0 +1,56 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/*
+ 插入服务测试：合法位置的插入与按行拆分的朴素模型比对；越界位置被拒绝且不改动内容。
+ */
+class InsertServiceTest {
+
+    @Test
+    void insertsMatchNaiveModel() {
+        Random random = new Random(22);
+        TextModel model = new TextModel();
+        InsertService service = new InsertService(model);
+        StringBuilder expected = new StringBuilder(TextStorageTest.randomText(random, 5_000));
+        model.setContentFromString(expected.toString());
+        for (int step = 0; step < 500; step++) {
+            String[] lines = expected.toString().split("\n", -1);
+            int line = random.nextInt(lines.length);
+            int col = random.nextInt(lines[line].length() + 1);
+            int offset = 0;
+            for (int i = 0; i < line; i++) offset += lines[i].length() + 1;
+            offset += col;
+            if (random.nextBoolean()) {
+                String text = TextStorageTest.randomText(random, random.nextInt(20));
+                service.insertString(line, col, text);
+                expected.insert(offset, text);
+            } else {
+                String[] block = {"x" + step, "", "y"};
+                service.insertTextBlock(line, col, block);
+                expected.insert(offset, String.join("\n", block));
+            }
+            assertEquals(expected.toString(), model.getContentAsString(), "step " + step);
+        }
+    }
+
+    @Test
+    void rejectsPositionsOutsideTheText() {
+        TextModel model = new TextModel();
+        InsertService service = new InsertService(model);
+        model.setContentFromString("a\nb\nc");
+        assertThrows(IllegalArgumentException.class, () -> service.insertString(1000, 0, "X"));
+        assertThrows(IllegalArgumentException.class, () -> service.insertString(1, 50, "X"));
+        assertThrows(IllegalArgumentException.class, () -> service.insertString(-1, 0, "X"));
+        assertThrows(IllegalArgumentException.class, () -> service.insertString(0, -1, "X"));
+        assertThrows(IllegalArgumentException.class, () -> service.insertTextBlock(3, 0, new String[]{"X"}));
+        assertThrows(IllegalArgumentException.class, () -> service.insertTextBlock(0, 2, new String[0]));
+        assertEquals("a\nb\nc", model.getContentAsString());
+
+        service.insertString(2, 1, "X"); // 末行行尾
+        assertEquals("a\nb\ncX", model.getContentAsString());
+    }
+}
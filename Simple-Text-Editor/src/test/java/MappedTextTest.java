@@ -0,0 +1,176 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ 内存映射文本测试：映射内容、换行位置与统计值必须与逐行读取（BufferedReader.readLine再以\n连接）一致，
+ 覆盖\r\n、单独的\r、多字节UTF-8与跨越解码块边界的增补字符；非法UTF-8序列回退（返回null）。
+ */
+class MappedTextTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void smallFilesMatchLineReader() throws IOException {
+        String[] texts = {"", "\n", "\r\n", "\r", "a", "a\n", "a\r\nb\r\n", "a\rb\r\rc", "\r\n\r\n",
+                "中文\r\n😀x\n", "tab\tand  spaces \r\n  \n end", "﻿bom\n"};
+        for (String text : texts) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            assertMatchesLineReader(bytes, scan(bytes), new Random(0));
+        }
+    }
+
+    @Test
+    void exactOnlyForAsciiWithLineFeeds() throws IOException {
+        assertTrue(scan("abc\ndef\n".getBytes(StandardCharsets.US_ASCII)).isExact());
+        assertFalse(scan("abc\r\ndef".getBytes(StandardCharsets.US_ASCII)).isExact());
+        assertFalse(scan("é".getBytes(StandardCharsets.UTF_8)).isExact());
+    }
+
+    @Test
+    void largeMixedFileDecodesAcrossBlocks() throws IOException {
+        Random random = new Random(12);
+        String[] pieces = {"word", " ", "\r\n", "\n", "\r", "中文", "😀", "é", "\t", "x_y"};
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 200_000) {
+            sb.append(pieces[random.nextInt(pieces.length)]);
+        }
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        MappedText text = scan(bytes);
+        assertFalse(text.isExact());
+        assertMatchesLineReader(bytes, text, random);
+
+        //增补字符跨越最后一个块边界，且其后没有更多字符
+        bytes = ("a".repeat(4095) + "😀").getBytes(StandardCharsets.UTF_8);
+        assertMatchesLineReader(bytes, scan(bytes), random);
+    }
+
+    @Test
+    void malformedUtf8FallsBack() throws IOException {
+        byte[][] cases = {
+                {'a', (byte) 0xC3},                          // 截断的序列
+                {(byte) 0xFF},                               // 非法首字节
+                {(byte) 0xC0, (byte) 0x80},                  // 过长编码
+                {(byte) 0xED, (byte) 0xA0, (byte) 0x80},     // 代理区码点
+                {(byte) 0xE4, 'a', 'b'},                     // 缺少后续字节
+        };
+        for (byte[] bytes : cases) {
+            assertNull(scan(bytes), Arrays.toString(bytes));
+        }
+    }
+
+    @Test
+    void fileServiceOpensLargeCrlfUtf8FileLikeSmallOne() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < (1 << 20) + 1000; i++) {
+            sb.append("第").append(i).append("行 line\r\n");
+        }
+        Path file = dir.resolve("big.txt");
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+        TextModel model = new TextModel();
+        assertTrue(new FileService(model).openFile(file.toString()));
+        String expected = readLines(sb.toString().getBytes(StandardCharsets.UTF_8));
+        assertEquals(expected, model.getContentAsString());
+        //映射打开：全文留在映射区，堆上只有换行位置表与片段树
+        assertTrue(model.estimateMemoryBytes() < sb.length(), () -> String.valueOf(model.estimateMemoryBytes()));
+        TextModelTest.assertStats(expected, model);
+        assertEquals(expected.split("\n", -1)[12345], model.getLine(12345));
+    }
+
+    @Test
+    void detachKeepsContentForModelAndSnapshots() throws IOException {
+        for (String content : new String[]{"abc\ndef\n".repeat(1000), "中文\r\n😀 x\r\n".repeat(1000)}) {
+            MappedText text = scan(content.getBytes(StandardCharsets.UTF_8));
+            TextModel model = new TextModel(TextModel.Backend.PIECE_TABLE);
+            model.setContent(text);
+            String expected = model.getContentAsString();
+            TextModel snapshot = model.snapshot();
+            model.insertText(3, "inserted");
+            text.detach();
+            assertTrue(text.isDetached());
+            assertEquals(expected, snapshot.getContentAsString());
+            assertEquals(expected.substring(0, 3) + "inserted" + expected.substring(3), model.getContentAsString());
+            assertEquals(expected.split("\n", -1)[777], snapshot.getLine(777));
+            text.detach(); // 重复调用无副作用
+            assertEquals(expected, text.toString());
+        }
+    }
+
+    @Test
+    void savingOverMappedFileReplacesIt() throws IOException {
+        Path file = dir.resolve("mapped.txt");
+        Files.writeString(file, "line\n".repeat(300_000), StandardCharsets.UTF_8);
+        TextModel model = new TextModel();
+        FileService service = new FileService(model);
+        assertTrue(service.openFile(file.toString()));
+        model.insertText(0, "first ");
+        assertTrue(service.saveFile(file.toString()), service::getLastError);
+        assertEquals("first " + "line\n".repeat(299_999) + "line", Files.readString(file, StandardCharsets.UTF_8));
+        assertNull(service.getLastError());
+        //失败时给出原因
+        assertFalse(service.saveFile(dir.resolve("missing/out.txt").toString()));
+        assertTrue(service.getLastError().contains("missing"), service.getLastError());
+    }
+
+    private MappedText scan(byte[] bytes) throws IOException {
+        Path file = Files.createTempFile(dir, "mapped", ".txt");
+        Files.write(file, bytes);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return MappedText.scan(channel);
+        }
+    }
+
+    private static void assertMatchesLineReader(byte[] bytes, MappedText text, Random random) throws IOException {
+        String expected = readLines(bytes);
+        assertEquals(expected, text.toString());
+        assertEquals(expected.length(), text.length());
+        //随机顺序逐字符读取，检验块缓存的切换
+        for (int k = 0; k < Math.min(5000, expected.length() * 3); k++) {
+            int i = random.nextInt(expected.length());
+            assertEquals(expected.charAt(i), text.charAt(i), "char " + i);
+        }
+        for (int k = 0; k < 50 && !expected.isEmpty(); k++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = start + random.nextInt(expected.length() - start + 1);
+            assertEquals(expected.substring(start, end), text.subSequence(start, end).toString());
+        }
+        List<Integer> feeds = new ArrayList<>();
+        for (int i = 0; i < expected.length(); i++) {
+            if (expected.charAt(i) == '\n') feeds.add(i);
+        }
+        assertArrayEquals(feeds.stream().mapToInt(Integer::intValue).toArray(), text.getLineFeeds());
+        TextModel model = new TextModel();
+        model.setContentFromString(expected);
+        assertEquals(model.getWordCount(), text.getWordCount());
+        assertEquals(model.getNonBlankLineCount(), text.getNonBlankLines());
+    }
+
+    //逐行读取再以\n连接（FileService按行读取的结果）
+    private static String readLines(byte[] bytes) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) lines.add(line);
+        return String.join("\n", lines);
+    }
+}
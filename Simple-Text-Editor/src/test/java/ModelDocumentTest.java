@@ -0,0 +1,74 @@
+import org.junit.jupiter.api.Test;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.PlainDocument;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ ModelDocument 与朴素做法（空PlainDocument上一次insertString整篇文本）逐项比较：
+ 内容、行元素边界，以及建好后继续编辑的结果。
+ */
+class ModelDocumentTest {
+
+    @Test
+    void matchesPlainDocumentBuiltFromString() throws BadLocationException {
+        Random random = new Random(9);
+        String[] texts = {"", "\n", "a", "a\n", "\n\nb\n", TextStorageTest.randomText(random, 200_000)};
+        for (String text : texts) {
+            TextModel model = new TextModel();
+            model.setContentFromString(text);
+            // 多个片段：中间插入与删除后内容分布在多个块中
+            if (text.length() > 10) {
+                model.insertText(text.length() / 3, "inserted\nline\n");
+                model.deleteText(text.length() / 2, 7);
+            }
+            String expected = model.getContentAsString();
+            ModelDocument doc = ModelDocument.of(model, null);
+            PlainDocument reference = new PlainDocument();
+            reference.insertString(0, expected, null);
+
+            assertEquals(expected, doc.getText(0, doc.getLength()));
+            assertSameLines(reference, doc);
+            assertEquals(model.getTotalLines(), doc.getDefaultRootElement().getElementCount());
+
+            // 建好后与普通文档一样继续编辑
+            int at = expected.length() / 2;
+            for (Document d : new Document[]{reference, doc}) {
+                d.insertString(at, "x\ny", null);
+                d.remove(0, Math.min(3, d.getLength()));
+            }
+            assertEquals(reference.getText(0, reference.getLength()), doc.getText(0, doc.getLength()));
+            assertSameLines(reference, doc);
+        }
+    }
+
+    @Test
+    void reportsProgressAndStopsWhenInterrupted() {
+        TextModel model = new TextModel();
+        model.setContentFromString("line\n".repeat(100_000));
+        long[] last = new long[1];
+        assertNotNull(ModelDocument.of(model, (processed, total) -> last[0] = processed));
+        assertEquals(model.getCharCount(), last[0]);
+
+        Thread.currentThread().interrupt();
+        try {
+            assertNull(ModelDocument.of(model, null));
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    private static void assertSameLines(Document expected, Document actual) {
+        Element a = expected.getDefaultRootElement();
+        Element b = actual.getDefaultRootElement();
+        assertEquals(a.getElementCount(), b.getElementCount());
+        for (int i = 0; i < a.getElementCount(); i++) {
+            assertEquals(a.getElement(i).getStartOffset(), b.getElement(i).getStartOffset(), "line " + i);
+            assertEquals(a.getElement(i).getEndOffset(), b.getElement(i).getEndOffset(), "line " + i);
+        }
+    }
+}
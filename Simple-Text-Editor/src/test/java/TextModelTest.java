@@ -0,0 +1,291 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ 文本模型测试：随机编辑与StringBuilder朴素模型比对全文与统计；
+ 行事件应用到镜像行列表后与模型一致；批量编辑的提交、回滚与撤销/重做。
+ */
+class TextModelTest {
+
+    @ParameterizedTest
+    @EnumSource(value = TextModel.Backend.class, names = {"PIECE_TABLE", "ROPE"})
+    void randomEditsMatchNaiveModelAndEvents(TextModel.Backend backend) {
+        Random random = new Random(11);
+        TextModel model = new TextModel(backend);
+        List<String> mirror = mirrorOf(model);
+        StringBuilder expected = new StringBuilder(TextStorageTest.randomText(random, 2000));
+        model.setContentFromString(expected.toString());
+        for (int step = 0; step < 1500; step++) {
+            if (random.nextInt(10) == 0) {
+                //批量编辑：若干次编辑合并为一次事件，提交结果可把旧文本变为新文本
+                String before = expected.toString();
+                TextChange change = model.runAtomically(() -> {
+                    for (int k = 0; k < 5; k++) randomEdit(model, expected, random);
+                });
+                if (change != null) {
+                    StringBuilder applied = new StringBuilder(before);
+                    applied.replace(change.getOffset(), change.getOffset() + change.getLength(), change.getText());
+                    assertEquals(expected.toString(), applied.toString());
+                }
+            } else {
+                randomEdit(model, expected, random);
+            }
+            assertEquals(expected.toString(), model.getContentAsString());
+            if (step % 25 == 0) {
+                assertStats(expected.toString(), model);
+                assertEquals(Arrays.asList(expected.toString().split("\n", -1)), mirror);
+            }
+        }
+        assertStats(expected.toString(), model);
+        assertEquals(Arrays.asList(expected.toString().split("\n", -1)), mirror);
+    }
+
+    @Test
+    void lineOperationsMatchNaiveLines() {
+        Random random = new Random(5);
+        TextModel model = new TextModel();
+        List<String> lines = new ArrayList<>(List.of(""));
+        for (int step = 0; step < 1000; step++) {
+            int total = lines.size();
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    int at = random.nextInt(total + 1);
+                    List<String> added = List.of("l" + step, "", " w " + step);
+                    model.insertLines(at, added);
+                    lines.addAll(at, added);
+                }
+                case 1 -> {
+                    int from = random.nextInt(total);
+                    int to = from + random.nextInt(3) + 1;
+                    model.removeLines(from, to);
+                    lines.subList(from, Math.min(to, total)).clear();
+                    if (lines.isEmpty()) lines.add("");
+                }
+                case 2 -> {
+                    int from = random.nextInt(total);
+                    int to = Math.min(total, from + random.nextInt(4) + 1);
+                    int target = random.nextInt(total + 1);
+                    model.moveLines(from, to, target);
+                    if (target < from || target > to) {
+                        List<String> block = new ArrayList<>(lines.subList(from, to));
+                        lines.subList(from, to).clear();
+                        lines.addAll(target > from ? target - block.size() : target, block);
+                    }
+                }
+                default -> {
+                    int line = random.nextInt(total);
+                    model.updateLine(line, "u" + step);
+                    lines.set(line, "u" + step);
+                }
+            }
+            assertEquals(String.join("\n", lines), model.getContentAsString());
+            assertEquals(lines.size(), model.getTotalLines());
+        }
+        assertStats(String.join("\n", lines), model);
+    }
+
+    @Test
+    void rollbackRestoresContentAndStatsWithoutEvents() {
+        TextModel model = new TextModel();
+        model.setContentFromString("one two\n\nthree");
+        int[] events = {0};
+        model.addTextModelListener((m, first, removed, inserted) -> events[0]++);
+        model.beginBatch();
+        model.insertText(0, "zero ");
+        model.deleteText(9, 4);
+        model.rollback();
+        assertEquals("one two\n\nthree", model.getContentAsString());
+        assertEquals(3, model.getWordCount());
+        assertEquals(2, model.getNonBlankLineCount());
+        assertEquals(0, events[0]);
+
+        //内层回滚：最外层提交时整体回滚，返回null
+        model.beginBatch();
+        model.insertText(0, "a");
+        model.beginBatch();
+        model.insertText(0, "b");
+        model.rollback();
+        model.insertText(0, "c");
+        assertNull(model.commit());
+        assertEquals("one two\n\nthree", model.getContentAsString());
+        assertEquals(0, events[0]);
+
+        //runAtomically异常时回滚全部编辑并继续抛出
+        assertThrows(IllegalStateException.class, () -> model.runAtomically(() -> {
+            model.insertText(0, "x");
+            throw new IllegalStateException();
+        }));
+        assertEquals("one two\n\nthree", model.getContentAsString());
+    }
+
+    @Test
+    void undoRedoMatchStateStack() {
+        Random random = new Random(23);
+        TextModel model = new TextModel();
+        model.enableUndo(10_000, Long.MAX_VALUE);
+        List<String> mirror = mirrorOf(model);
+        StringBuilder expected = new StringBuilder();
+        Deque<String> undoStack = new ArrayDeque<>();
+        Deque<String> redoStack = new ArrayDeque<>();
+        for (int step = 0; step < 600; step++) {
+            int action = random.nextInt(10);
+            if (action < 2 && !undoStack.isEmpty()) {
+                String view = expected.toString();
+                TextChange change = model.undo();
+                redoStack.push(view);
+                expected.setLength(0);
+                expected.append(undoStack.pop());
+                assertEquals(expected.toString(), applyChange(view, change));
+            } else if (action < 3 && !redoStack.isEmpty()) {
+                String view = expected.toString();
+                TextChange change = model.redo();
+                undoStack.push(view);
+                expected.setLength(0);
+                expected.append(redoStack.pop());
+                assertEquals(expected.toString(), applyChange(view, change));
+            } else {
+                //每次编辑前断开合并，一次编辑对应一条撤销记录
+                model.breakUndoCoalescing();
+                String before = expected.toString();
+                boolean[] recorded = {false};
+                if (random.nextBoolean()) {
+                    model.runAtomically(() -> {
+                        recorded[0] |= randomEdit(model, expected, random);
+                        recorded[0] |= randomEdit(model, expected, random);
+                    });
+                } else {
+                    recorded[0] = randomEdit(model, expected, random);
+                }
+                if (recorded[0]) {
+                    undoStack.push(before);
+                    redoStack.clear();
+                }
+            }
+            assertEquals(expected.toString(), model.getContentAsString());
+            assertEquals(!undoStack.isEmpty(), model.canUndo());
+            assertEquals(!redoStack.isEmpty(), model.canRedo());
+            assertStats(expected.toString(), model);
+            assertEquals(Arrays.asList(expected.toString().split("\n", -1)), mirror);
+        }
+    }
+
+    @Test
+    void typingCoalescesUntilBroken() {
+        TextModel model = new TextModel();
+        model.enableUndo(100, Long.MAX_VALUE);
+        for (char c : "hello".toCharArray()) {
+            model.insertText(model.getLength(), String.valueOf(c));
+        }
+        model.breakUndoCoalescing();
+        for (char c : "abc".toCharArray()) {
+            model.insertText(model.getLength(), String.valueOf(c));
+        }
+        model.undo();
+        assertEquals("hello", model.getContentAsString());
+        model.undo();
+        assertEquals("", model.getContentAsString());
+        assertFalse(model.canUndo());
+        model.redo();
+        model.redo();
+        assertEquals("helloabc", model.getContentAsString());
+
+        //换行不与输入合并
+        model.insertText(model.getLength(), "\n");
+        model.insertText(model.getLength(), "x");
+        model.undo();
+        assertEquals("helloabc\n", model.getContentAsString());
+        assertTrue(model.canUndo());
+    }
+
+    @Test
+    void positionConversionsRoundTrip() {
+        TextModel model = new TextModel();
+        String text = "ab\n\ncdef\ng";
+        model.setContentFromString(text);
+        for (int offset = 0; offset <= text.length(); offset++) {
+            int[] lc = model.offsetToLineCol(offset);
+            assertEquals(offset, model.lineColToOffset(lc[0], lc[1]));
+            int line = (int) text.substring(0, offset).chars().filter(c -> c == '\n').count();
+            assertEquals(line, lc[0]);
+        }
+    }
+
+    //一次随机编辑，同时作用于模型与朴素模型；返回是否产生了编辑（空替换不算）
+    private static boolean randomEdit(TextModel model, StringBuilder expected, Random random) {
+        int length = expected.length();
+        switch (random.nextInt(5)) {
+            case 0, 1 -> {
+                int offset = random.nextInt(length + 1);
+                String text = random.nextInt(3) == 0 ? String.valueOf("ab \n".charAt(random.nextInt(4)))
+                        : TextStorageTest.randomText(random, random.nextInt(30) + 1);
+                model.insertText(offset, text);
+                expected.insert(offset, text);
+            }
+            case 2 -> {
+                if (length == 0) return false;
+                int offset = random.nextInt(length);
+                int n = random.nextInt(Math.min(40, length - offset)) + 1;
+                model.deleteText(offset, n);
+                expected.delete(offset, offset + n);
+            }
+            case 3 -> {
+                int offset = random.nextInt(length + 1);
+                int n = random.nextInt(Math.min(40, length - offset) + 1);
+                String text = TextStorageTest.randomText(random, random.nextInt(10));
+                model.replaceText(offset, n, text);
+                expected.replace(offset, offset + n, text);
+                return n > 0 || !text.isEmpty();
+            }
+            default -> {
+                int lines = model.getTotalLines();
+                int line = random.nextInt(lines);
+                String text = "line " + random.nextInt(100);
+                String[] naive = expected.toString().split("\n", -1);
+                naive[line] = text;
+                model.updateLine(line, text);
+                expected.setLength(0);
+                expected.append(String.join("\n", naive));
+            }
+        }
+        return true;
+    }
+
+    //注册监听器，把行事件应用到镜像行列表
+    private static List<String> mirrorOf(TextModel model) {
+        List<String> mirror = new ArrayList<>();
+        for (int i = 0; i < model.getTotalLines(); i++) mirror.add(model.getLine(i));
+        model.addTextModelListener((m, first, removed, inserted) -> {
+            mirror.subList(first, first + removed).clear();
+            for (int i = 0; i < inserted; i++) mirror.add(first + i, m.getLine(first + i));
+        });
+        return mirror;
+    }
+
+    private static String applyChange(String text, TextChange change) {
+        return text.substring(0, change.getOffset()) + change.getText()
+                + text.substring(change.getOffset() + change.getLength());
+    }
+
+    //统计值与朴素计算一致：单词以空白分隔，非空白行为含非空白字符的行
+    static void assertStats(String text, TextModel model) {
+        long words = Arrays.stream(text.split("\\s+")).filter(w -> !w.isEmpty()).count();
+        long nonBlank = Arrays.stream(text.split("\n", -1)).filter(l -> !l.isBlank()).count();
+        assertEquals(text.length(), model.getLength());
+        assertEquals(words, model.getWordCount(), "words");
+        assertEquals(nonBlank, model.getNonBlankLineCount(), "non-blank lines");
+    }
+}
@@ -0,0 +1,170 @@
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ 存储后端测试：片段表与绳索树执行同一组随机编辑，每步与StringBuilder朴素模型逐项比对
+ （全文、行数、行首偏移、偏移所在行、区间读取、分块遍历），并检查快照与恢复。
+ */
+class TextStorageTest {
+
+    static Stream<Arguments> backends() {
+        return Stream.of(
+                Arguments.of("PieceTable", (Function<String, TextStorage>) PieceTable::new),
+                Arguments.of("Rope", (Function<String, TextStorage>) Rope::new));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("backends")
+    void randomEditsMatchNaiveModel(String name, Function<String, TextStorage> factory) {
+        Random random = new Random(42);
+        StringBuilder expected = new StringBuilder(randomText(random, 5000));
+        TextStorage storage = factory.apply(expected.toString());
+        assertMatches(expected, storage, random);
+        for (int step = 0; step < 2000; step++) {
+            int op = random.nextInt(3);
+            if (op == 0 || expected.length() == 0) {
+                int offset = random.nextInt(expected.length() + 1);
+                String text = randomText(random, random.nextInt(40) + 1);
+                storage.insert(offset, text);
+                expected.insert(offset, text);
+            } else if (op == 1) {
+                int offset = random.nextInt(expected.length());
+                int length = random.nextInt(Math.min(60, expected.length() - offset)) + 1;
+                storage.delete(offset, length);
+                expected.delete(offset, offset + length);
+            } else {
+                int offset = random.nextInt(expected.length());
+                int length = random.nextInt(Math.min(200, expected.length() - offset)) + 1;
+                int target = random.nextInt(expected.length() + 1);
+                storage.move(offset, length, target);
+                naiveMove(expected, offset, length, target);
+            }
+            if (step % 50 == 0) assertMatches(expected, storage, random);
+        }
+        assertMatches(expected, storage, random);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("backends")
+    void snapshotIsIsolatedAndRestorable(String name, Function<String, TextStorage> factory) {
+        Random random = new Random(7);
+        StringBuilder expected = new StringBuilder(randomText(random, 3000));
+        TextStorage storage = factory.apply(expected.toString());
+        List<TextStorage> snapshots = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (int step = 0; step < 200; step++) {
+            if (step % 20 == 0) {
+                snapshots.add(storage.snapshot());
+                texts.add(expected.toString());
+            }
+            int offset = random.nextInt(expected.length() + 1);
+            String text = randomText(random, 10);
+            storage.insert(offset, text);
+            expected.insert(offset, text);
+        }
+        for (int i = 0; i < snapshots.size(); i++) {
+            assertEquals(texts.get(i), contentOf(snapshots.get(i)));
+        }
+        //恢复到较早的快照后仍可继续编辑，且不影响其他快照
+        storage.restore(snapshots.get(3));
+        expected = new StringBuilder(texts.get(3));
+        storage.delete(0, 5);
+        expected.delete(0, 5);
+        storage.insert(expected.length(), "\ntail");
+        expected.append("\ntail");
+        assertMatches(expected, storage, random);
+        assertEquals(texts.get(4), contentOf(snapshots.get(4)));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("backends")
+    void appendsAcrossPageBoundaries(String name, Function<String, TextStorage> factory) {
+        Random random = new Random(3);
+        StringBuilder expected = new StringBuilder("head\n");
+        TextStorage storage = factory.apply(expected.toString());
+        //连续追加超过两个64K分页，插入文本跨越分页边界
+        while (expected.length() < 3 * 65536) {
+            String text = randomText(random, 997);
+            storage.insert(expected.length(), text);
+            expected.append(text);
+        }
+        int middle = 65536 - 10;
+        storage.insert(middle, "页边界\n");
+        expected.insert(middle, "页边界\n");
+        assertMatches(expected, storage, random);
+    }
+
+    //逐项与朴素模型比对
+    private static void assertMatches(CharSequence expected, TextStorage storage, Random random) {
+        String text = expected.toString();
+        assertEquals(text.length(), storage.length());
+        assertEquals(text, contentOf(storage));
+        List<Integer> lineStarts = new ArrayList<>();
+        lineStarts.add(0);
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') lineStarts.add(i + 1);
+        }
+        assertEquals(lineStarts.size(), storage.getLineCount());
+        for (int line = 0; line < lineStarts.size(); line++) {
+            assertEquals(lineStarts.get(line), storage.getLineStart(line), "line " + line);
+        }
+        for (int k = 0; k < 50; k++) {
+            int offset = random.nextInt(text.length() + 1);
+            int line = 0;
+            for (int i = 0; i < offset; i++) {
+                if (text.charAt(i) == '\n') line++;
+            }
+            assertEquals(line, storage.getLineOfOffset(offset), "offset " + offset);
+            int length = random.nextInt(text.length() - offset + 1);
+            assertEquals(text.substring(offset, offset + length), storage.getText(offset, length));
+            StringBuilder sb = new StringBuilder("x");
+            storage.appendTo(sb, offset, length);
+            assertEquals("x" + text.substring(offset, offset + length), sb.toString());
+        }
+        StringBuilder chunks = new StringBuilder();
+        Iterator<CharBuffer> it = storage.chunks();
+        while (it.hasNext()) {
+            chunks.append(it.next());
+        }
+        assertEquals(text, chunks.toString());
+    }
+
+    private static String contentOf(TextStorage storage) {
+        StringBuilder sb = new StringBuilder();
+        storage.appendTo(sb);
+        return sb.toString();
+    }
+
+    //朴素的区间移动：target为移动前的偏移，落在区间内或紧邻区间时不变
+    private static void naiveMove(StringBuilder sb, int offset, int length, int target) {
+        if (target >= offset && target <= offset + length) return;
+        String block = sb.substring(offset, offset + length);
+        sb.delete(offset, offset + length);
+        sb.insert(target > offset ? target - length : target, block);
+    }
+
+    //随机文本：含换行、空白、宽字符与代理对
+    static String randomText(Random random, int length) {
+        String alphabet = "abcXYZ _\n\n\t中文é";
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            if (random.nextInt(50) == 0) {
+                sb.append("😀");
+            } else {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,82 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ 三元组索引测试：增量维护的候选行必须包含所有真实匹配行，
+ 且编辑后的片段数、有效对应数与对当前内容重新建立的索引一致（没有残留或丢失）。
+ */
+class TrigramIndexTest {
+    private static final String[] QUERIES = {"abc", "ABC", "b_x", "中文a", "abcabc", "c\tc"};
+
+    @Test
+    void incrementalIndexMatchesFreshIndex() {
+        Random random = new Random(8);
+        TextModel model = new TextModel();
+        model.setContentFromString(FindReplaceServiceTest.wordyText(random, 20_000));
+        model.enableUndo(1000, Long.MAX_VALUE);
+        TrigramIndex index = new TrigramIndex(model);
+        for (int step = 0; step < 400; step++) {
+            int length = model.getLength();
+            switch (random.nextInt(5)) {
+                case 0 -> model.insertText(random.nextInt(length + 1), FindReplaceServiceTest.wordyText(random, 40));
+                case 1 -> {
+                    int offset = random.nextInt(length);
+                    model.deleteText(offset, Math.min(length - offset, random.nextInt(80) + 1));
+                }
+                case 2 -> {
+                    int line = random.nextInt(model.getTotalLines());
+                    model.removeLines(line, line + random.nextInt(4) + 1);
+                }
+                case 3 -> {
+                    int total = model.getTotalLines();
+                    int from = random.nextInt(total);
+                    model.moveLines(from, Math.min(total, from + 3), random.nextInt(total + 1));
+                }
+                default -> model.undo();
+            }
+            if (step % 40 == 0) assertIndexMatches(model, index);
+        }
+        assertIndexMatches(model, index);
+
+        //整体替换内容后同样与重建一致；关闭后不再跟踪
+        model.setContentFromString("abc\nxabcx\n");
+        assertIndexMatches(model, index);
+        index.close();
+        model.insertText(0, "abcabc\n");
+        assertEquals(0, index.getIndexedLines());
+        assertEquals(0, index.getPostingCount());
+    }
+
+    @Test
+    void shortQueriesCannotNarrow() {
+        TextModel model = new TextModel();
+        model.setContentFromString("abc\nabd");
+        TrigramIndex index = new TrigramIndex(model);
+        assertNull(index.candidateLines("ab"));
+        assertEquals(0, index.candidateLines("zzz").length);
+    }
+
+    private static void assertIndexMatches(TextModel model, TrigramIndex index) {
+        TrigramIndex fresh = new TrigramIndex(model);
+        try {
+            assertEquals(model.getTotalLines(), index.getIndexedLines());
+            assertEquals(fresh.getGramCount(), index.getGramCount());
+            assertEquals(fresh.getPostingCount(), index.getPostingCount());
+            String text = model.getContentAsString();
+            for (String query : QUERIES) {
+                int[] candidates = index.candidateLines(query);
+                for (int[] match : FindReplaceServiceTest.naiveFind(text, query, true, false)) {
+                    assertTrue(java.util.Arrays.binarySearch(candidates, match[0]) >= 0,
+                            query + " line " + match[0]);
+                }
+            }
+        } finally {
+            fresh.close();
+        }
+    }
+}